@@ -1,5 +1,8 @@
 package com.cobalt.bamboo.plugin.pipeline.cache;
 
+import com.cobalt.bamboo.plugin.pipeline.domain.model.PlanDurations;
+
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -30,6 +33,83 @@ public interface CacheManager {
 	 */
 	public void updateWallBoardDataForPlan(String planKey, boolean updateUptimeGrade);
 	
+	/**
+	 * Request an update of the WallBoardData in the cache for the given plan, as done
+	 * by {@link #updateWallBoardDataForPlan(String, boolean)}. Requests for the same plan
+	 * that arrive close together are folded into a single update, which happens shortly
+	 * after, outside the calling thread.
+	 * 
+	 * @param planKey of the plan to update in the cache
+	 * @param updateUptimeGrade A boolean to indicate whether to update the UptimeGrade in the cache
+	 */
+	public void requestWallBoardDataUpdate(String planKey, boolean updateUptimeGrade);
+	
+	/**
+	 * Request the stage of the given job to be marked as started, for the job having
+	 * been queued. Only the stage and the last update time of the cached plan are
+	 * patched. If the plan isn't cached for the given build, the whole plan is updated
+	 * as by {@link #requestWallBoardDataUpdate(String, boolean)} instead.
+	 * 
+	 * @param planKey of the plan the job belongs to
+	 * @param jobKey plan key of the job, e.g. PROJECT-PLAN-JOB
+	 * @param buildNumber of the build the job belongs to
+	 */
+	public void requestJobQueuedUpdate(String planKey, String jobKey, int buildNumber);
+	
+	/**
+	 * Request the stage of the given job to be patched with the state the job finished
+	 * with. Only the stage and the last update time of the cached plan are patched. If
+	 * the plan isn't cached for the given build, the whole plan is updated as by
+	 * {@link #requestWallBoardDataUpdate(String, boolean)} instead.
+	 * 
+	 * @param planKey of the plan the job belongs to
+	 * @param jobKey plan key of the job, e.g. PROJECT-PLAN-JOB
+	 * @param buildNumber of the build the job belongs to
+	 */
+	public void requestJobCompletedUpdate(String planKey, String jobKey, int buildNumber);
+	
+	/**
+	 * Get the number of requested updates that were skipped because they were folded
+	 * into another update of the same plan.
+	 * 
+	 * @return the number of skipped updates since the plugin started
+	 */
+	public long getSkippedUpdateCount();
+	
+	/**
+	 * Get the number of updates that were discarded because they were computed from
+	 * an older build than the one already in the cache, e.g. for events handled late.
+	 * 
+	 * @return the number of outdated updates since the plugin started
+	 */
+	public long getOutdatedUpdateCount();
+	
+	/**
+	 * Get the number of updates that were folded into a full update of their plan
+	 * because the update queue was full.
+	 * 
+	 * @return the number of folded updates since the plugin started
+	 */
+	public long getMergedUpdateCount();
+	
+	/**
+	 * Get the number of requested updates that are waiting to be applied.
+	 * 
+	 * @return the number of updates waiting in the update queue
+	 */
+	public int getUpdateQueueDepth();
+	
+	/**
+	 * Find the plans whose cached WallBoardData is behind their latest build, or that
+	 * are missing from the cache, and request their update. The plans are checked in
+	 * rotating windows, so that every plan gets checked over several calls without
+	 * ever rebuilding the whole cache at once. Plans that no longer exist are removed.
+	 * 
+	 * @param scanSize number of cached plans to check for staleness
+	 * @param batchSize maximum number of plans to update, most outdated first
+	 */
+	public void reconcileWallBoardData(int scanSize, int batchSize);
+	
 	/**
 	 * Get WallBoardData for all of the plans.
 	 * 
@@ -37,6 +117,55 @@ public interface CacheManager {
 	 */
 	public List<WallBoardData> getAllWallBoardData();
 	
+	/**
+	 * Get the durations of the builds and stages of the given plan, or of all the plans
+	 * of the given project, merged together.
+	 * 
+	 * @param projectKey key of the project, null for all the projects
+	 * @param planKey key of the plan, null for all the plans of the project
+	 * @return the merged durations of the plans, empty if no plan matches.
+	 */
+	public PlanDurations getDurations(String projectKey, String planKey);
+	
+	/**
+	 * Get the whole board, pre-rendered to JSON, for the current version of the cache.
+	 * 
+	 * @return an immutable view of the board of all plans.
+	 * @throws IOException if the board can't be rendered.
+	 */
+	public RenderedWallBoard getRenderedWallBoard() throws IOException;
+	
+	/**
+	 * Get the WallBoardData of the plans that were added, changed or removed since
+	 * the given version of the cache.
+	 * 
+	 * @param version of the cache the client already has, 0 for the full board.
+	 * @return the changes since the given version, along with the new version.
+	 */
+	public WallBoardDelta getWallBoardDataSince(long version);
+	
+	/**
+	 * Check whether the first load of the cache is still running. While it is, the
+	 * cache only holds the plans loaded so far.
+	 * 
+	 * @return true if the first load of the cache isn't done yet, false otherwise.
+	 */
+	public boolean isLoading();
+	
+	/**
+	 * Get the number of plans loaded so far by the running (or last) load of the cache.
+	 * 
+	 * @return the number of plans loaded.
+	 */
+	public int getLoadedPlanCount();
+	
+	/**
+	 * Get the number of plans to load by the running (or last) load of the cache.
+	 * 
+	 * @return the number of plans to load, 0 if not known yet.
+	 */
+	public int getTotalPlanCount();
+	
 	/**
 	 * Clear everything in the cache.
 	 */
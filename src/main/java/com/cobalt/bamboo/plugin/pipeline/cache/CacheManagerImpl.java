@@ -1,33 +1,134 @@
 package com.cobalt.bamboo.plugin.pipeline.cache;
 
+import com.atlassian.bamboo.builder.BuildState;
 import com.atlassian.bamboo.plan.Plan;
-import com.atlassian.bamboo.plan.TopLevelPlan;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import com.atlassian.sal.api.ApplicationProperties;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
 import com.atlassian.sal.api.transaction.TransactionCallback;
 import com.atlassian.sal.api.transaction.TransactionTemplate;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.Build;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.PlanDurations;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.PlanStatistics;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.ProjectReport;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.UptimeGrade;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.UptimeWindows;
 import com.cobalt.bamboo.plugin.pipeline.domain.services.PlanService;
+import com.cobalt.bamboo.plugin.pipeline.domain.services.SingleFlight;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class CacheManagerImpl implements CacheManager {
+public class CacheManagerImpl implements CacheManager, LifecycleAware, DisposableBean {
     private static final Logger logger = LoggerFactory.getLogger(CacheManagerImpl.class);
+    private static final int PROGRESS_LOG_STEPS = 10;
+
     private TransactionTemplate transactionTemplate;
     private WallBoardCache wallBoardCache;
     private PlanService planService;
+    private ApplicationProperties applicationProperties;
 
-    private final Object lock = new Object();
-
+    // the first load runs once, in the background, unless it fails
+    private final AtomicBoolean firstLoadStarted;
     private AtomicBoolean firstLoadDone;
+    // held while the whole cache is refreshed, so that refreshes never overlap
+    private final Object refreshLock = new Object();
+
+    // workers that build WallBoardData during a full refresh, and the permits that
+    // cap how many of the plugin's workers may hold a database transaction at once.
+    // Work that runs through planUpdates takes its permit inside planUpdates, since a
+    // worker may run the work handed to it by others right after its own.
+    private final ExecutorService refreshExecutor;
+    private final Semaphore dbPermits;
+    private final AtomicInteger refreshTotal;
+    private final AtomicInteger refreshDone;
+
+    // runs the background work of the cache: snapshot writes and reconciliation
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean snapshotDirty;
+
+    // folds bursts of build events of the same plan into a single update, which is
+    // then applied by the update workers, in order for each plan
+    private final PlanUpdateCoalescer updateCoalescer;
+    private final PlanUpdateExecutor updateExecutor;
+    // runs the updates of a plan one at a time, whoever requests them
+    private final SingleFlight<String, Void> planUpdates;
+    // updates discarded because the cache already held a newer build of the plan
+    private final AtomicLong outdatedUpdates;
+    // job events of each plan waiting to be patched into the cache, so that the events
+    // of a plan arriving together are patched in one go, in a single transaction
+    private final ConcurrentMap<String, Queue<JobEvent>> jobEvents;
+
+    // position of the next window of plans checked by the reconciliation
+    private final Object reconcileLock = new Object();
+    private int reconcileCursor;
 
     public CacheManagerImpl() {
         wallBoardCache = new WallBoardCache();
+        firstLoadStarted = new AtomicBoolean(false);
         firstLoadDone = new AtomicBoolean(false);
+        refreshExecutor = Executors.newFixedThreadPool(CacheSettings.REFRESH_THREADS,
+                new NamedThreadFactory("pipeline-refresh"));
+        dbPermits = new Semaphore(CacheSettings.DB_CONCURRENCY, true);
+        refreshTotal = new AtomicInteger();
+        refreshDone = new AtomicInteger();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("pipeline-scheduler"));
+        snapshotDirty = new AtomicBoolean(false);
+        updateExecutor = new PlanUpdateExecutor(new PlanUpdateExecutor.UpdateHandler() {
+
+            @Override
+            public void update(String planKey, boolean updateUptimeGrade) {
+                updateWallBoardDataForPlan(planKey, updateUptimeGrade);
+            }
+        }, CacheSettings.UPDATE_THREADS, CacheSettings.UPDATE_QUEUE_CAPACITY);
+        planUpdates = new SingleFlight<String, Void>();
+        outdatedUpdates = new AtomicLong();
+        jobEvents = new ConcurrentHashMap<String, Queue<JobEvent>>();
+        updateCoalescer = new PlanUpdateCoalescer(new PlanUpdateCoalescer.UpdateHandler() {
+
+            @Override
+            public void update(String planKey, boolean updateUptimeGrade) {
+                submitUpdate(planKey, updateUptimeGrade);
+            }
+        }, CacheSettings.COALESCE_WINDOW_MILLIS);
+
+        if (CacheSettings.SNAPSHOT_INTERVAL_SECONDS > 0) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (snapshotDirty.get()) {
+                        saveSnapshot();
+                    }
+                }
+            }, CacheSettings.SNAPSHOT_INTERVAL_SECONDS, CacheSettings.SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
     }
 
     /**
@@ -35,18 +136,25 @@ public class CacheManagerImpl implements CacheManager {
      * will be replaced.
      */
     public void putAllWallBoardData() {
-        transactionTemplate.execute(new TransactionCallback() {
-
-            @Override
-            public Object doInTransaction() {
-
-                refreshCache();
-
-                firstLoadDone.compareAndSet(false, true);
-
-                return null;
+        firstLoadStarted.set(true);
+        try {
+            refreshCache();
+            saveSnapshot();
+            firstLoadDone.compareAndSet(false, true);
+        } finally {
+            if (!firstLoadDone.get()) {
+                // let the next request start the first load again
+                firstLoadStarted.set(false);
             }
-        });
+        }
+    }
+
+    /**
+     * Start loading the cache in the background as soon as the plugin is enabled.
+     */
+    @Override
+    public void onStart() {
+        startFirstLoad();
     }
 
     /**
@@ -58,32 +166,219 @@ public class CacheManagerImpl implements CacheManager {
      * @param updateUptimeGrade A boolean to indicate whether to update the UptimeGrade in the cache
      */
     public void updateWallBoardDataForPlan(final String planKey, final boolean updateUptimeGrade) {
+        planUpdates.update(planKey, new Runnable() {
+
+            @Override
+            public void run() {
+                dbPermits.acquireUninterruptibly();
+                try {
+                    applyWallBoardDataUpdate(planKey, updateUptimeGrade);
+                } finally {
+                    dbPermits.release();
+                }
+            }
+        });
+    }
+
+    /*
+     * Build the new WallBoardData of the given plan and put it into the cache. Must
+     * only run through planUpdates, so that it never races with another update of
+     * the same plan.
+     */
+    private void applyWallBoardDataUpdate(final String planKey, final boolean updateUptimeGrade) {
         transactionTemplate.execute(new TransactionCallback() {
 
             @Override
             public Object doInTransaction() {
+                WallBoardData wallBoardData = buildWallBoardData(planKey, updateUptimeGrade);
+                if (wallBoardData != null) {
+                    putIfNewer(planKey, wallBoardData);
+                }
+                return null;
+            }
+        });
+    }
 
-                ProjectReport projectReport = planService.getCDResultForPlan(planKey);
+    /*
+     * Build the new WallBoardData of the given plan, updating the UptimeGrade and the
+     * other per-plan stats along the way. Return null if the plan can't be built, or if
+     * the cache already reflects a newer build of it.
+     * Must be called in a transaction, through planUpdates.
+     */
+    private WallBoardData buildWallBoardData(String planKey, boolean updateUptimeGrade) {
+        WallBoardData cached = wallBoardCache.get(planKey);
+        ProjectReport projectReport;
+        UptimeGrade uptimeGrade;
+        UptimeWindows uptimeWindows;
+        PlanDurations durations;
+        if (cached == null) {
+            PlanStatistics statistics = planService.getPlanStatistics(planKey);
+            if (statistics == null) {
+                return null;
+            }
+            projectReport = statistics.getProjectReport();
+            uptimeGrade = statistics.getUptimeGrade();
+            uptimeWindows = statistics.getUptimeWindows();
+            durations = statistics.getDurations();
+        } else {
+            projectReport = planService.getCDResultForPlan(planKey);
+            uptimeGrade = cached.uptimeGrade;
+            uptimeWindows = cached.uptimeWindows;
+            durations = cached.durations;
+        }
+        if (projectReport == null || uptimeGrade == null || uptimeWindows == null || durations == null) {
+            return null;
+        }
 
-                UptimeGrade uptimeGrade;
-                if (!wallBoardCache.containsPlan(planKey)) {
-                    uptimeGrade = planService.getUptimeGradeForPlan(planKey);
-                } else {
-                    uptimeGrade = wallBoardCache.get(planKey).uptimeGrade;
-                    if (updateUptimeGrade) {
-                        uptimeGrade.update(projectReport.getCurrentBuild());
-                    }
-                }
+        if (cached != null) {
+            // The cached accumulators are shared with the data being served, so the
+            // build is applied to copies of them, which are only published if this
+            // update wins
+            Build currentBuild = projectReport.getCurrentBuild();
+            if (updateUptimeGrade && currentBuild != null) {
+                uptimeGrade = uptimeGrade.copy();
+                uptimeGrade.update(currentBuild);
+                uptimeWindows = uptimeWindows.copy();
+                uptimeWindows.update(currentBuild);
+            }
+            if (currentBuild != null && currentBuild.getBuildCompletedDate() != null) {
+                // records the build once it completes, and again if it completes again
+                durations = durations.copy();
+                durations.record(projectReport);
+            }
+        }
 
+        WallBoardData wallBoardData = new WallBoardData(planKey, projectReport, uptimeGrade, uptimeWindows, durations);
+        if (cached != null && wallBoardData.isOlderThan(cached)) {
+            // a late update, the cache already reflects a newer build
+            discardOutdatedUpdate(planKey);
+            return null;
+        }
 
-                if (projectReport != null && uptimeGrade != null) {
-                    WallBoardData wallBoardData = new WallBoardData(planKey, projectReport, uptimeGrade);
-                    wallBoardCache.put(planKey, wallBoardData);
-                }
+        planService.updateChangeListForPlan(planKey);
+        if (updateUptimeGrade) {
+            planService.updatePerformanceStatsForPlan(planKey);
+            planService.updateBuildHistoryIndexForPlan(planKey);
+        }
+        return wallBoardData;
+    }
 
-                return null;
+    /**
+     * Request an update of the WallBoardData in the cache for the given plan. Requests
+     * for the same plan that arrive within the coalescing window are folded into a
+     * single update.
+     *
+     * @param planKey           of the plan to update in the cache
+     * @param updateUptimeGrade A boolean to indicate whether to update the UptimeGrade in the cache
+     */
+    public void requestWallBoardDataUpdate(String planKey, boolean updateUptimeGrade) {
+        updateCoalescer.submit(planKey, updateUptimeGrade);
+    }
+
+    /**
+     * Request the stage of the given job to be marked as started, for the job having
+     * been queued. Only the stage and the last update time of the cached plan are
+     * patched. If the plan isn't cached for the given build, the whole plan is updated
+     * as by {@link #requestWallBoardDataUpdate(String, boolean)} instead.
+     *
+     * @param planKey     of the plan the job belongs to
+     * @param jobKey      plan key of the job, e.g. PROJECT-PLAN-JOB
+     * @param buildNumber of the build the job belongs to
+     */
+    public void requestJobQueuedUpdate(String planKey, String jobKey, int buildNumber) {
+        submitJobEvent(planKey, new JobEvent(jobKey, buildNumber, new Date()));
+    }
+
+    /**
+     * Request the stage of the given job to be patched with the state the job finished
+     * with. Only the stage and the last update time of the cached plan are patched. If
+     * the plan isn't cached for the given build, the whole plan is updated as by
+     * {@link #requestWallBoardDataUpdate(String, boolean)} instead.
+     *
+     * @param planKey     of the plan the job belongs to
+     * @param jobKey      plan key of the job, e.g. PROJECT-PLAN-JOB
+     * @param buildNumber of the build the job belongs to
+     */
+    public void requestJobCompletedUpdate(String planKey, String jobKey, int buildNumber) {
+        submitJobEvent(planKey, new JobEvent(jobKey, buildNumber, null));
+    }
+
+    /**
+     * Get the number of requested updates that were skipped because they were folded
+     * into another update of the same plan.
+     *
+     * @return the number of skipped updates since the plugin started
+     */
+    public long getSkippedUpdateCount() {
+        return updateCoalescer.getSkippedCount();
+    }
+
+    /**
+     * Get the number of updates that were discarded because they were computed from
+     * an older build than the one already in the cache, e.g. for events handled late.
+     *
+     * @return the number of outdated updates since the plugin started
+     */
+    public long getOutdatedUpdateCount() {
+        return outdatedUpdates.get();
+    }
+
+    /**
+     * Get the number of updates that were folded into a full update of their plan
+     * because the update queue was full.
+     *
+     * @return the number of folded updates since the plugin started
+     */
+    public long getMergedUpdateCount() {
+        return updateExecutor.getMergedCount();
+    }
+
+    /**
+     * Find the plans whose cached WallBoardData is behind their latest build, or that
+     * are missing from the cache, and request their update. The plans are checked in
+     * rotating windows, so that every plan gets checked over several calls without
+     * ever rebuilding the whole cache at once. Plans that no longer exist are removed.
+     *
+     * @param scanSize  number of cached plans to check for staleness
+     * @param batchSize maximum number of plans to update, most outdated first
+     */
+    public void reconcileWallBoardData(final int scanSize, final int batchSize) {
+        if (!firstLoadDone.get()) {
+            // the first load is still building the whole cache
+            return;
+        }
+
+        List<String> stalePlanKeys;
+        synchronized (reconcileLock) {
+            dbPermits.acquireUninterruptibly();
+            try {
+                stalePlanKeys = transactionTemplate.execute(new TransactionCallback<List<String>>() {
+
+                    @Override
+                    public List<String> doInTransaction() {
+                        return findStalePlans(scanSize, batchSize);
+                    }
+                });
+            } finally {
+                dbPermits.release();
             }
-        });
+        }
+
+        if (!stalePlanKeys.isEmpty()) {
+            logger.info("Reconciling " + stalePlanKeys.size() + " outdated plans");
+        }
+        for (String planKey : stalePlanKeys) {
+            submitUpdate(planKey, true);
+        }
+    }
+
+    /**
+     * Get the number of requested updates that are waiting to be applied.
+     *
+     * @return the number of updates waiting in the update queue
+     */
+    public int getUpdateQueueDepth() {
+        return updateCoalescer.getPendingCount() + updateExecutor.getQueueDepth();
     }
 
     /**
@@ -92,19 +387,138 @@ public class CacheManagerImpl implements CacheManager {
      * @return a list of WallBoardData representing all plans.
      */
     public List<WallBoardData> getAllWallBoardData() {
-        if (!firstLoadDone.get()) {
-            synchronized (lock) {
-                logger.info("Refreshing cache");
-                refreshCache();
-                firstLoadDone.set(true);
-            }
-        }
+        ensureFirstLoad();
 
         List<WallBoardData> results = wallBoardCache.getAllWallBoardData();
 
         return results;
     }
 
+    /**
+     * Get the durations of the builds and stages of the given plan, or of all the plans
+     * of the given project, merged together.
+     *
+     * @param projectKey key of the project, null for all the projects
+     * @param planKey    key of the plan, null for all the plans of the project
+     * @return the merged durations of the plans
+     */
+    public PlanDurations getDurations(String projectKey, String planKey) {
+        ensureFirstLoad();
+
+        PlanDurations merged = new PlanDurations();
+        for (WallBoardData wallBoardData : wallBoardCache.getAllWallBoardData()) {
+            if (wallBoardData.durations == null
+                    || (planKey != null && !planKey.equals(wallBoardData.planKey))
+                    || (projectKey != null && (wallBoardData.cdresult == null
+                            || !projectKey.equals(wallBoardData.cdresult.getProjectKey())))) {
+                continue;
+            }
+            merged.merge(wallBoardData.durations);
+        }
+        return merged;
+    }
+
+    /**
+     * Get the whole board, pre-rendered to JSON, for the current version of the cache.
+     *
+     * @return an immutable view of the board of all plans.
+     * @throws IOException if the board can't be rendered.
+     */
+    public RenderedWallBoard getRenderedWallBoard() throws IOException {
+        ensureFirstLoad();
+
+        return wallBoardCache.getRenderedWallBoard();
+    }
+
+    /**
+     * Get the WallBoardData of the plans that were added, changed or removed since
+     * the given version of the cache.
+     *
+     * @param version of the cache the client already has, 0 for the full board.
+     * @return the changes since the given version, along with the new version.
+     */
+    public WallBoardDelta getWallBoardDataSince(long version) {
+        ensureFirstLoad();
+
+        WallBoardDelta delta = wallBoardCache.getChangesSince(version);
+        if (isLoading()) {
+            delta.setLoadingProgress(getLoadedPlanCount(), getTotalPlanCount());
+        }
+        return delta;
+    }
+
+    /**
+     * Check whether the first load of the cache is still running. While it is, the
+     * cache only holds the plans loaded so far.
+     *
+     * @return true if the first load of the cache isn't done yet, false otherwise.
+     */
+    public boolean isLoading() {
+        return !firstLoadDone.get();
+    }
+
+    /**
+     * Get the number of plans loaded so far by the running (or last) load of the cache.
+     *
+     * @return the number of plans loaded.
+     */
+    public int getLoadedPlanCount() {
+        return refreshDone.get();
+    }
+
+    /**
+     * Get the number of plans to load by the running (or last) load of the cache.
+     *
+     * @return the number of plans to load, 0 if not known yet.
+     */
+    public int getTotalPlanCount() {
+        return refreshTotal.get();
+    }
+
+    /*
+     * Start the first load of the cache, unless it is already started. Never waits for
+     * the load, readers get the plans loaded so far in the meantime.
+     */
+    private void ensureFirstLoad() {
+        if (!firstLoadDone.get()) {
+            startFirstLoad();
+        }
+    }
+
+    /*
+     * Load the cache in the background: serve the snapshot, if any, right away, then
+     * bring every plan up to date from the database. Only the first call starts it.
+     */
+    private void startFirstLoad() {
+        if (!firstLoadStarted.compareAndSet(false, true)) {
+            return;
+        }
+
+        scheduler.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (restoreSnapshot()) {
+                        logger.info("Reconciling cache restored from snapshot");
+                    } else {
+                        logger.info("Refreshing cache");
+                    }
+                    refreshCache();
+                    saveSnapshot();
+                    firstLoadDone.set(true);
+                } catch (RuntimeException e) {
+                    logger.error("Failed to load the cache, it will be loaded again on the next request", e);
+                } finally {
+                    if (!firstLoadDone.get()) {
+                        // let the next request start the first load again
+                        firstLoadStarted.set(false);
+                    }
+                }
+            }
+        });
+    }
+
     /**
      * Clear everything in the cache.
      */
@@ -113,28 +527,479 @@ public class CacheManagerImpl implements CacheManager {
     }
 
     /*
-     * Refresh the cache
+     * Submit an update of the given plan to the update workers.
+     */
+    private void submitUpdate(final String planKey, final boolean updateUptimeGrade) {
+        updateExecutor.execute(planKey, updateUptimeGrade, new Runnable() {
+
+            @Override
+            public void run() {
+                updateWallBoardDataForPlan(planKey, updateUptimeGrade);
+            }
+        });
+    }
+
+    /*
+     * Queue the given job event of the given plan, and submit a patch that applies the
+     * events of the plan queued by then. Events queued while a patch of the plan is
+     * waiting are applied by that patch, and the patches submitted for them find
+     * nothing left to apply.
+     */
+    private void submitJobEvent(final String planKey, JobEvent event) {
+        Queue<JobEvent> events = jobEvents.get(planKey);
+        if (events == null) {
+            Queue<JobEvent> created = new ConcurrentLinkedQueue<JobEvent>();
+            events = jobEvents.putIfAbsent(planKey, created);
+            if (events == null) {
+                events = created;
+            }
+        }
+        events.add(event);
+
+        submitPatch(planKey, new Runnable() {
+
+            @Override
+            public void run() {
+                applyJobEvents(planKey);
+            }
+        });
+    }
+
+    /*
+     * Patch the queued job events of the given plan into the cache, in the order they
+     * arrived, and put the patched report into the cache once. The results of the
+     * completed jobs are looked up in a single transaction. Must only run through
+     * planUpdates.
+     */
+    private void applyJobEvents(final String planKey) {
+        Queue<JobEvent> queue = jobEvents.get(planKey);
+        final List<JobEvent> events = new ArrayList<JobEvent>();
+        JobEvent event;
+        while (queue != null && (event = queue.poll()) != null) {
+            events.add(event);
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+
+        boolean anyCompleted = false;
+        for (JobEvent e : events) {
+            anyCompleted |= e.isCompleted();
+        }
+        if (!anyCompleted) {
+            WallBoardData cached = wallBoardCache.get(planKey);
+            putPatchedReport(planKey, cached, patchJobEvents(cached, events));
+            return;
+        }
+
+        dbPermits.acquireUninterruptibly();
+        try {
+            transactionTemplate.execute(new TransactionCallback() {
+
+                @Override
+                public Object doInTransaction() {
+                    WallBoardData cached = wallBoardCache.get(planKey);
+                    putPatchedReport(planKey, cached, patchJobEvents(cached, events));
+                    return null;
+                }
+            });
+        } finally {
+            dbPermits.release();
+        }
+    }
+
+    /*
+     * Return the report of the given cached data patched with the given job events, or
+     * null if any of them can't be patched. Must be called in a transaction if any of
+     * the events is a completed job.
+     */
+    private ProjectReport patchJobEvents(WallBoardData cached, List<JobEvent> events) {
+        ProjectReport patched = cached != null ? cached.cdresult : null;
+        for (JobEvent event : events) {
+            if (patched == null) {
+                return null;
+            }
+            if (!event.isCompleted()) {
+                patched = patched.withJobQueued(event.buildNumber, event.jobKey, event.queuedTime);
+                continue;
+            }
+
+            // a single lookup of the job's own result
+            ResultsSummary jobResult = planService.getResultForBuild(event.jobKey, event.buildNumber);
+            if (jobResult == null) {
+                return null;
+            }
+            // a stopped job may have no completed date, nor a build state
+            Date completedDate = jobResult.getBuildCompletedDate() != null ? jobResult.getBuildCompletedDate() : new Date();
+            BuildState jobState = jobResult.getBuildState() != null ? jobResult.getBuildState() : BuildState.UNKNOWN;
+            patched = patched.withJobCompleted(event.buildNumber, event.jobKey, jobState, completedDate);
+        }
+        return patched;
+    }
+
+    /*
+     * Submit a patch of the given plan to the update workers, in order with the other
+     * updates of the plan.
+     */
+    private void submitPatch(final String planKey, final Runnable patch) {
+        // if the update queue is full, a full update of the plan stands in for the patch
+        updateExecutor.execute(planKey, false, new Runnable() {
+
+            @Override
+            public void run() {
+                planUpdates.update(planKey, patch);
+            }
+        });
+    }
+
+    /*
+     * Put the patched report of the given plan into the cache, or request an update of
+     * the whole plan if it couldn't be patched or the cached data changed meanwhile.
+     */
+    private void putPatchedReport(String planKey, WallBoardData cached, ProjectReport patched) {
+        if (patched == null) {
+            updateCoalescer.submit(planKey, false);
+            return;
+        }
+        // the patch only applies to the data it was computed from
+        WallBoardData wallBoardData = new WallBoardData(planKey, patched, cached.uptimeGrade, cached.uptimeWindows,
+                cached.durations);
+        if (wallBoardCache.replace(planKey, cached, wallBoardData)) {
+            snapshotDirty.set(true);
+        } else {
+            updateCoalescer.submit(planKey, false);
+        }
+    }
+
+    /*
+     * Put the given WallBoardData into the cache unless the cache already holds newer
+     * data of the plan, in which case the data is discarded.
+     */
+    private void putIfNewer(String planKey, WallBoardData wallBoardData) {
+        if (wallBoardCache.putIfNewer(planKey, wallBoardData)) {
+            snapshotDirty.set(true);
+        } else {
+            discardOutdatedUpdate(planKey);
+        }
+    }
+
+    /*
+     * Count an update of the given plan discarded for being older than the cache.
+     */
+    private void discardOutdatedUpdate(String planKey) {
+        long count = outdatedUpdates.incrementAndGet();
+        logger.debug("Discarded outdated update of " + planKey + " (" + count + " discarded so far)");
+    }
+
+    /*
+     * Check the next window of plans and return the keys of at most batchSize plans
+     * to update, the most outdated first. Plans missing from the cache come first,
+     * and cached plans that no longer exist are removed.
+     * Must be called in a transaction.
+     */
+    private List<String> findStalePlans(int scanSize, int batchSize) {
+        List<String> planKeys = new ArrayList<String>();
+        for (Plan plan : planService.getAllPlans()) {
+            planKeys.add(plan.getPlanKey().getKey());
+        }
+        Collections.sort(planKeys);
+
+        Set<String> planKeysSet = new HashSet<String>(planKeys);
+        for (String planKey : wallBoardCache.getAllPlanKeys()) {
+            if (!planKeysSet.contains(planKey)) {
+                wallBoardCache.removePlan(planKey);
+                planService.evictPlan(planKey);
+                snapshotDirty.set(true);
+            }
+        }
+
+        final Map<String, Long> staleness = new HashMap<String, Long>();
+        for (String planKey : planKeys) {
+            if (!wallBoardCache.containsPlan(planKey)) {
+                staleness.put(planKey, Long.MAX_VALUE);
+            }
+        }
+
+        int numToScan = Math.min(scanSize, planKeys.size());
+        for (int i = 0; i < numToScan; i++) {
+            String planKey = planKeys.get((reconcileCursor + i) % planKeys.size());
+            if (staleness.containsKey(planKey)) {
+                continue;
+            }
+            ResultsSummary latest = planService.getLatestResultForPlan(planKey);
+            if (isAheadOfHistory(planKey, latest)) {
+                // the cached build no longer exists, e.g. its results were deleted or the
+                // plan was recreated, so the plan is loaded again from scratch
+                logger.info("Reloading " + planKey + ", its cached build is gone from its history");
+                wallBoardCache.removePlan(planKey);
+                planService.evictPlan(planKey);
+                snapshotDirty.set(true);
+                staleness.put(planKey, Long.MAX_VALUE);
+                continue;
+            }
+            long lag = getStaleness(planKey, latest);
+            if (lag > 0) {
+                staleness.put(planKey, lag);
+            }
+        }
+        reconcileCursor = planKeys.isEmpty() ? 0 : (reconcileCursor + numToScan) % planKeys.size();
+
+        List<String> stalePlanKeys = new ArrayList<String>(staleness.keySet());
+        Collections.sort(stalePlanKeys, new Comparator<String>() {
+
+            @Override
+            public int compare(String a, String b) {
+                return staleness.get(b).compareTo(staleness.get(a));
+            }
+        });
+        return stalePlanKeys.subList(0, Math.min(batchSize, stalePlanKeys.size()));
+    }
+
+    /*
+     * Return true if the cached data of the given plan reflects a newer build than the
+     * given latest build of the plan, which updates can never catch up with.
+     */
+    private boolean isAheadOfHistory(String planKey, ResultsSummary latest) {
+        WallBoardData cached = wallBoardCache.get(planKey);
+        if (cached == null || cached.cdresult == null || cached.cdresult.getCurrentBuild() == null) {
+            return false;
+        }
+        int latestBuildNumber = latest == null ? -1 : latest.getBuildNumber();
+        return cached.cdresult.getCurrentBuild().getBuildNumber() > latestBuildNumber;
+    }
+
+    /*
+     * Return how far behind the given latest build the cached data of the given plan
+     * is, in milliseconds (at least 1 if it is behind), or 0 if it is up to date.
+     */
+    private long getStaleness(String planKey, ResultsSummary latest) {
+        WallBoardData cached = wallBoardCache.get(planKey);
+        if (cached == null || cached.cdresult == null || latest == null) {
+            return 0;
+        }
+
+        Date latestActivity = latest.getBuildCompletedDate();
+        if (latestActivity == null) {
+            latestActivity = latest.getBuildDate() != null ? latest.getBuildDate() : latest.getQueueTime();
+        }
+        Date cachedUpdate = cached.cdresult.getLastUpdateTime();
+
+        boolean sameBuild = cached.cdresult.getCurrentBuild() != null
+                && cached.cdresult.getCurrentBuild().getBuildNumber() == latest.getBuildNumber();
+        boolean upToDate = latestActivity == null || (cachedUpdate != null && !cachedUpdate.before(latestActivity));
+        if (sameBuild && upToDate) {
+            return 0;
+        }
+
+        if (latestActivity == null) {
+            return 1;
+        }
+        return Math.max(1, latestActivity.getTime() - (cachedUpdate == null ? 0 : cachedUpdate.getTime()));
+    }
+
+    /**
+     * Shut down the workers and write the latest cache into the snapshot when the
+     * plugin is disabled or uninstalled.
+     */
+    @Override
+    public void destroy() {
+        updateCoalescer.shutdown();
+        updateExecutor.shutdown();
+        scheduler.shutdownNow();
+        refreshExecutor.shutdownNow();
+        if (firstLoadDone.get()) {
+            saveSnapshot();
+        }
+    }
+
+    /*
+     * Write the cache into the on-disk snapshot. Failures are logged but otherwise
+     * ignored, the snapshot is only an optimization for the next start.
+     */
+    private void saveSnapshot() {
+        WallBoardSnapshotFile snapshotFile = getSnapshotFile();
+        if (snapshotFile == null) {
+            return;
+        }
+
+        snapshotDirty.set(false);
+        try {
+            long startTime = System.currentTimeMillis();
+            int saved = snapshotFile.save(wallBoardCache.getAllWallBoardData());
+            logger.debug("Saved " + saved + " plans into snapshot in " + (System.currentTimeMillis() - startTime) + " ms");
+        } catch (IOException e) {
+            logger.warn("Failed to save the wallboard snapshot", e);
+        }
+    }
+
+    /*
+     * Fill the cache from the on-disk snapshot.
+     * Return true if any plan was restored, false otherwise.
+     */
+    private boolean restoreSnapshot() {
+        WallBoardSnapshotFile snapshotFile = getSnapshotFile();
+        if (snapshotFile == null) {
+            return false;
+        }
+
+        try {
+            List<WallBoardData> snapshot = snapshotFile.load();
+            for (WallBoardData wallBoardData : snapshot) {
+                // plans updated by build events in the meantime are newer already
+                wallBoardCache.putIfAbsent(wallBoardData.planKey, wallBoardData);
+            }
+            logger.info("Restored " + snapshot.size() + " plans from snapshot");
+            return !snapshot.isEmpty();
+        } catch (IOException e) {
+            logger.warn("Failed to restore the wallboard snapshot, refreshing from the database", e);
+            wallBoardCache.clear();
+            return false;
+        }
+    }
+
+    /*
+     * Return the on-disk snapshot, or null if snapshots are disabled or Bamboo's home
+     * directory is unknown.
+     */
+    private WallBoardSnapshotFile getSnapshotFile() {
+        if (CacheSettings.SNAPSHOT_INTERVAL_SECONDS <= 0 || applicationProperties == null
+                || applicationProperties.getHomeDirectory() == null) {
+            return null;
+        }
+        return new WallBoardSnapshotFile(new File(applicationProperties.getHomeDirectory(), CacheSettings.SNAPSHOT_FILE));
+    }
+
+    /*
+     * Refresh the cache. The WallBoardData of the plans are built in parallel by the
+     * refresh workers, a plan per transaction, and put into the cache as soon as
+     * each of them is ready. Returns once every plan has been refreshed, or handed to
+     * the worker that is updating it.
+     * Waits for any other refresh of the cache to finish first.
      */
     private void refreshCache() {
-        List<TopLevelPlan> plans = planService.getAllPlans();
-        Set<String> planKeysSet = new HashSet<String>();
+        synchronized (refreshLock) {
+            refreshAllPlans();
+        }
+    }
 
-        for (Plan plan : plans) {
-            String planKey = plan.getPlanKey().getKey();
-            UptimeGrade uptimeGrade = planService.getUptimeGradeForPlan(planKey);
-            ProjectReport projectReport = planService.getCDResultForPlan(planKey);
-            WallBoardData wallBoardData = new WallBoardData(planKey, projectReport, uptimeGrade);
+    /*
+     * Refresh every plan of the cache. Must only be called through refreshCache().
+     */
+    private void refreshAllPlans() {
+        long startTime = System.currentTimeMillis();
+
+        Set<String> planKeysSet = transactionTemplate.execute(new TransactionCallback<Set<String>>() {
+
+            @Override
+            public Set<String> doInTransaction() {
+                Set<String> planKeys = new HashSet<String>();
+                for (Plan plan : planService.getAllPlans()) {
+                    planKeys.add(plan.getPlanKey().getKey());
+                }
+                return planKeys;
+            }
+        });
+
+        refreshTotal.set(planKeysSet.size());
+        refreshDone.set(0);
+        final int logInterval = Math.max(1, planKeysSet.size() / PROGRESS_LOG_STEPS);
+
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final String planKey : planKeysSet) {
+            futures.add(refreshExecutor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    refreshPlanInTurn(planKey, logInterval);
+                }
+            }));
+        }
 
-            planKeysSet.add(planKey);
-            wallBoardCache.put(planKey, wallBoardData);
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Cache refresh interrupted after " + refreshDone.get() + " plans");
+                return;
+            } catch (ExecutionException e) {
+                logger.error("Failed to refresh a plan", e.getCause());
+            }
         }
 
         for (String planKey : wallBoardCache.getAllPlanKeys()) {
             if (!planKeysSet.contains(planKey)) {
                 wallBoardCache.removePlan(planKey);
+                planService.evictPlan(planKey);
             }
         }
 
+        logger.info("Refreshed " + planKeysSet.size() + " plans in " + (System.currentTimeMillis() - startTime)
+                + " ms using " + CacheSettings.REFRESH_THREADS + " workers");
+    }
+
+    /*
+     * Refresh the given plan in its own short transaction once it is its turn in
+     * planUpdates, then count it as refreshed. Waits for a database permit. The
+     * refresh of a plan that is already being updated by another worker is handed to
+     * that worker, which refreshes and counts it after the running update.
+     */
+    private void refreshPlanInTurn(final String planKey, final int logInterval) {
+        try {
+            planUpdates.update(planKey, new Runnable() {
+
+                @Override
+                public void run() {
+                    dbPermits.acquireUninterruptibly();
+                    try {
+                        refreshPlan(planKey);
+                    } finally {
+                        dbPermits.release();
+                        int done = refreshDone.incrementAndGet();
+                        if (done % logInterval == 0) {
+                            logger.info("Refreshed " + done + " of " + refreshTotal.get() + " plans");
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.error("Failed to refresh " + planKey, e);
+        }
+    }
+
+    /*
+     * Build the WallBoardData for the given plan in its own transaction and put it
+     * into the cache. The data is loaded from scratch, so it stands even over newer
+     * builds. Must be called with a database permit held.
+     */
+    private void refreshPlan(final String planKey) {
+        transactionTemplate.execute(new TransactionCallback() {
+
+            @Override
+            public Object doInTransaction() {
+                WallBoardData wallBoardData = loadWallBoardData(planKey);
+                if (wallBoardData != null) {
+                    wallBoardCache.put(planKey, wallBoardData);
+                    snapshotDirty.set(true);
+                }
+                return null;
+            }
+        });
+    }
+
+    /*
+     * Build the WallBoardData for the given plan from scratch, out of a single pass
+     * over its history. Return null if the plan can't be built.
+     * Must be called in a transaction.
+     */
+    private WallBoardData loadWallBoardData(String planKey) {
+        PlanStatistics statistics = planService.getPlanStatistics(planKey);
+        if (statistics == null || statistics.getProjectReport() == null || statistics.getUptimeGrade() == null
+                || statistics.getUptimeWindows() == null || statistics.getDurations() == null) {
+            return null;
+        }
+        return new WallBoardData(planKey, statistics.getProjectReport(), statistics.getUptimeGrade(),
+                statistics.getUptimeWindows(), statistics.getDurations());
     }
 
     public TransactionTemplate getTransactionTemplate() {
@@ -145,6 +1010,14 @@ public class CacheManagerImpl implements CacheManager {
         this.transactionTemplate = transactionTemplate;
     }
 
+    public ApplicationProperties getApplicationProperties() {
+        return applicationProperties;
+    }
+
+    public void setApplicationProperties(ApplicationProperties applicationProperties) {
+        this.applicationProperties = applicationProperties;
+    }
+
     public PlanService getPlanService() {
         return planService;
     }
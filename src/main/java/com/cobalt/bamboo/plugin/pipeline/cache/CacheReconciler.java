@@ -0,0 +1,72 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import com.atlassian.sal.api.scheduling.PluginScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Schedules the background reconciliation of the cache with Bamboo's SAL
+ * PluginScheduler. Each run refreshes a small batch of the plans whose cached data is
+ * behind their latest build, which heals plans that missed build events without
+ * rebuilding the whole cache in one transaction.
+ */
+public class CacheReconciler implements LifecycleAware, DisposableBean {
+	private static final Logger logger = LoggerFactory.getLogger(CacheReconciler.class);
+	static final String KEY = CacheReconciler.class.getName() + ":instance";
+	private static final String JOB_NAME = CacheReconciler.class.getName() + ":job";
+
+	private final PluginScheduler pluginScheduler;
+	private final CacheManager cacheManager;
+	private volatile boolean scheduled;
+
+	public CacheReconciler(PluginScheduler pluginScheduler, CacheManager cacheManager) {
+		this.pluginScheduler = pluginScheduler;
+		this.cacheManager = cacheManager;
+	}
+
+	/**
+	 * Schedule the reconciliation job once Bamboo is up.
+	 */
+	@Override
+	public void onStart() {
+		long interval = CacheSettings.RECONCILE_INTERVAL_SECONDS * 1000;
+		if (interval <= 0) {
+			return;
+		}
+
+		Map<String, Object> jobDataMap = new HashMap<String, Object>();
+		jobDataMap.put(KEY, this);
+		pluginScheduler.scheduleJob(JOB_NAME, CacheReconciliationJob.class, jobDataMap,
+				new Date(System.currentTimeMillis() + interval), interval);
+		scheduled = true;
+		logger.info("Scheduled cache reconciliation every " + CacheSettings.RECONCILE_INTERVAL_SECONDS + " seconds");
+	}
+
+	/**
+	 * Unschedule the reconciliation job when the plugin is disabled or uninstalled.
+	 */
+	@Override
+	public void destroy() {
+		if (scheduled) {
+			try {
+				pluginScheduler.unscheduleJob(JOB_NAME);
+			} catch (IllegalArgumentException e) {
+				// the job was never scheduled or is already gone
+			}
+			scheduled = false;
+		}
+	}
+
+	/**
+	 * Run one reconciliation of the cache.
+	 */
+	void reconcile() {
+		cacheManager.reconcileWallBoardData(CacheSettings.RECONCILE_SCAN_SIZE, CacheSettings.RECONCILE_BATCH_SIZE);
+	}
+}
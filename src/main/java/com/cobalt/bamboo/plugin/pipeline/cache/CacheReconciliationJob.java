@@ -0,0 +1,29 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import com.atlassian.sal.api.scheduling.PluginJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * The PluginJob run by the PluginScheduler for the CacheReconciler given in its
+ * job data.
+ */
+public class CacheReconciliationJob implements PluginJob {
+	private static final Logger logger = LoggerFactory.getLogger(CacheReconciliationJob.class);
+
+	@Override
+	public void execute(Map<String, Object> jobDataMap) {
+		CacheReconciler reconciler = (CacheReconciler) jobDataMap.get(CacheReconciler.KEY);
+		if (reconciler == null) {
+			return;
+		}
+
+		try {
+			reconciler.reconcile();
+		} catch (RuntimeException e) {
+			logger.error("Cache reconciliation failed", e);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+/**
+ * Tunable settings of the cache, read from JVM system properties so that they can
+ * be adjusted on large Bamboo instances without rebuilding the plugin,
+ * e.g. -Dpipeline.refresh.threads=8
+ */
+public final class CacheSettings {
+
+	/**
+	 * Number of worker threads used to build WallBoardData during a full refresh.
+	 */
+	public static final int REFRESH_THREADS =
+			Math.max(1, Integer.getInteger("pipeline.refresh.threads", 4));
+
+	/**
+	 * Maximum number of plugin workers allowed to hold a database transaction at the
+	 * same time.
+	 */
+	public static final int DB_CONCURRENCY =
+			Math.max(1, Integer.getInteger("pipeline.db.concurrency", REFRESH_THREADS));
+
+	/**
+	 * Interval, in seconds, at which a changed cache is written into the on-disk
+	 * snapshot. Zero or less disables the snapshot.
+	 */
+	public static final long SNAPSHOT_INTERVAL_SECONDS = Long.getLong("pipeline.snapshot.interval", 60);
+
+	/**
+	 * Location of the on-disk snapshot, relative to Bamboo's home directory.
+	 */
+	public static final String SNAPSHOT_FILE = "pipeline/wallboard.snapshot";
+
+	/**
+	 * Window, in milliseconds, within which build events of the same plan are folded
+	 * into a single update. Zero or less updates the plan on every event.
+	 */
+	public static final long COALESCE_WINDOW_MILLIS = Long.getLong("pipeline.events.coalesceWindow", 1000);
+
+	/**
+	 * Number of worker threads that apply plan updates triggered by build events.
+	 */
+	public static final int UPDATE_THREADS = Math.max(1, Integer.getInteger("pipeline.events.workers", 2));
+
+	/**
+	 * Maximum number of plan updates waiting for each update worker. Once it is
+	 * reached, further updates of a plan are folded into a single full update.
+	 */
+	public static final int UPDATE_QUEUE_CAPACITY =
+			Math.max(1, Integer.getInteger("pipeline.events.queueCapacity", 1000));
+
+	/**
+	 * Interval, in seconds, of the background job that finds and refreshes the plans
+	 * whose cached data is behind their latest build. Zero or less disables the job.
+	 */
+	public static final long RECONCILE_INTERVAL_SECONDS = Long.getLong("pipeline.reconcile.interval", 60);
+
+	/**
+	 * Number of plans checked for staleness by each run of the reconciliation job.
+	 */
+	public static final int RECONCILE_SCAN_SIZE = Math.max(1, Integer.getInteger("pipeline.reconcile.scanSize", 100));
+
+	/**
+	 * Maximum number of plans refreshed by each run of the reconciliation job.
+	 */
+	public static final int RECONCILE_BATCH_SIZE = Math.max(1, Integer.getInteger("pipeline.reconcile.batchSize", 10));
+
+	private CacheSettings() {
+	}
+}
@@ -0,0 +1,23 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import java.util.Date;
+
+/**
+ * An event of a job of a plan waiting to be patched into the cache: the job was
+ * queued, or it completed if the event has no queued time.
+ */
+class JobEvent {
+	final String jobKey;
+	final int buildNumber;
+	final Date queuedTime;
+
+	JobEvent(String jobKey, int buildNumber, Date queuedTime) {
+		this.jobKey = jobKey;
+		this.buildNumber = buildNumber;
+		this.queuedTime = queuedTime;
+	}
+
+	boolean isCompleted() {
+		return queuedTime == null;
+	}
+}
@@ -0,0 +1,24 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThreadFactory that creates daemon threads with a recognizable name, so that the
+ * plugin's workers can be told apart in Bamboo's thread dumps.
+ */
+class NamedThreadFactory implements ThreadFactory {
+	private final String prefix;
+	private final AtomicInteger counter = new AtomicInteger();
+
+	NamedThreadFactory(String prefix) {
+		this.prefix = prefix;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
@@ -0,0 +1,107 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Folds bursts of update requests for the same plan into a single update.
+ *
+ * The first request for a plan schedules its update at the end of the window; every
+ * other request for that plan arriving before then is folded into the pending one
+ * and counted as a skipped update. A request that needs the UptimeGrade updated
+ * upgrades the pending update, so a chain completion is never lost in a burst of
+ * queued events.
+ */
+class PlanUpdateCoalescer {
+
+	/**
+	 * Performs the update of a plan once its window has passed.
+	 */
+	interface UpdateHandler {
+		void update(String planKey, boolean updateUptimeGrade);
+	}
+
+	private final UpdateHandler handler;
+	private final long windowMillis;
+	// plan key -> whether the pending update needs to update the UptimeGrade
+	private final ConcurrentMap<String, Boolean> pending;
+	private final ScheduledExecutorService timer;
+	private final AtomicLong skipped;
+
+	/**
+	 * @param handler to perform the updates
+	 * @param windowMillis time requests for the same plan are folded together for.
+	 *                     Zero or less performs every request right away.
+	 */
+	PlanUpdateCoalescer(UpdateHandler handler, long windowMillis) {
+		this.handler = handler;
+		this.windowMillis = windowMillis;
+		this.pending = new ConcurrentHashMap<String, Boolean>();
+		this.timer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("pipeline-coalescer"));
+		this.skipped = new AtomicLong();
+	}
+
+	/**
+	 * Request an update of the given plan.
+	 *
+	 * @param planKey of the plan to update
+	 * @param updateUptimeGrade whether the update needs to update the UptimeGrade
+	 */
+	void submit(final String planKey, boolean updateUptimeGrade) {
+		if (windowMillis <= 0) {
+			handler.update(planKey, updateUptimeGrade);
+			return;
+		}
+
+		while (true) {
+			Boolean pendingUptimeGrade = pending.putIfAbsent(planKey, updateUptimeGrade);
+			if (pendingUptimeGrade == null) {
+				timer.schedule(new Runnable() {
+
+					@Override
+					public void run() {
+						flush(planKey);
+					}
+				}, windowMillis, TimeUnit.MILLISECONDS);
+				return;
+			}
+
+			if (!updateUptimeGrade || pendingUptimeGrade
+					|| pending.replace(planKey, Boolean.FALSE, Boolean.TRUE)) {
+				skipped.incrementAndGet();
+				return;
+			}
+			// the pending update was flushed in the meantime, start a new one
+		}
+	}
+
+	/**
+	 * @return the number of updates that were folded into another update
+	 */
+	long getSkippedCount() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return the number of plans waiting for their update
+	 */
+	int getPendingCount() {
+		return pending.size();
+	}
+
+	void shutdown() {
+		timer.shutdownNow();
+	}
+
+	// Perform the pending update of the given plan, if any.
+	private void flush(String planKey) {
+		Boolean updateUptimeGrade = pending.remove(planKey);
+		if (updateUptimeGrade != null) {
+			handler.update(planKey, updateUptimeGrade);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs plan updates on a dedicated pool of worker threads, off Bamboo's event thread.
+ *
+ * Each worker owns a bounded queue (a lane), and all the updates of a plan go through
+ * the same lane, so the updates of a plan run one at a time in the order they were
+ * submitted. Submitting never waits and never drops an update: when a lane is full,
+ * the update is folded into a full update of its plan kept aside for the lane, at most
+ * one per plan, which the worker runs once it has caught up with the lane. Later
+ * updates of that plan are folded into it too, so that they still run in order.
+ */
+class PlanUpdateExecutor {
+	private static final Logger logger = LoggerFactory.getLogger(PlanUpdateExecutor.class);
+
+	// wakes up a worker waiting on an empty lane to run the updates kept aside
+	private static final Runnable WAKE_UP = new Runnable() {
+
+		@Override
+		public void run() {
+		}
+	};
+
+	/**
+	 * Performs the full update of a plan, for the updates kept aside.
+	 */
+	interface UpdateHandler {
+		void update(String planKey, boolean updateUptimeGrade);
+	}
+
+	private final UpdateHandler handler;
+	private final List<BlockingQueue<Runnable>> lanes;
+	// per lane, plan key -> whether the update kept aside needs to update the UptimeGrade
+	private final List<ConcurrentMap<String, Boolean>> overflows;
+	private final List<Thread> workers;
+	private final AtomicLong merged;
+	private volatile boolean running;
+
+	/**
+	 * @param handler to perform the full updates of the plans whose lane was full
+	 * @param numWorkers number of worker threads (and lanes)
+	 * @param laneCapacity maximum number of updates waiting in each lane
+	 */
+	PlanUpdateExecutor(UpdateHandler handler, int numWorkers, int laneCapacity) {
+		this.handler = handler;
+		this.merged = new AtomicLong();
+		this.lanes = new ArrayList<BlockingQueue<Runnable>>(numWorkers);
+		this.overflows = new ArrayList<ConcurrentMap<String, Boolean>>(numWorkers);
+		this.workers = new ArrayList<Thread>(numWorkers);
+		this.running = true;
+
+		ThreadFactory threadFactory = new NamedThreadFactory("pipeline-update");
+		for (int i = 0; i < numWorkers; i++) {
+			final BlockingQueue<Runnable> lane = new LinkedBlockingQueue<Runnable>(laneCapacity);
+			final ConcurrentMap<String, Boolean> overflow = new ConcurrentHashMap<String, Boolean>();
+			Thread worker = threadFactory.newThread(new Runnable() {
+
+				@Override
+				public void run() {
+					work(lane, overflow);
+				}
+			});
+			lanes.add(lane);
+			overflows.add(overflow);
+			workers.add(worker);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Submit an update of the given plan. Never waits for room in the lane.
+	 *
+	 * @param planKey of the plan the update is for
+	 * @param updateUptimeGrade whether the full update of the plan that would replace
+	 *                          this update needs to update the UptimeGrade
+	 * @param update to run
+	 */
+	void execute(String planKey, boolean updateUptimeGrade, Runnable update) {
+		if (!running) {
+			return;
+		}
+
+		int laneIndex = (planKey.hashCode() & Integer.MAX_VALUE) % lanes.size();
+		BlockingQueue<Runnable> lane = lanes.get(laneIndex);
+		ConcurrentMap<String, Boolean> overflow = overflows.get(laneIndex);
+		if (!overflow.containsKey(planKey) && lane.offer(update)) {
+			return;
+		}
+
+		// fold it into the full update kept aside for the plan
+		while (true) {
+			Boolean pendingUptimeGrade = overflow.putIfAbsent(planKey, updateUptimeGrade);
+			if (pendingUptimeGrade == null) {
+				break;
+			}
+			if (!updateUptimeGrade || pendingUptimeGrade || overflow.replace(planKey, Boolean.FALSE, Boolean.TRUE)) {
+				break;
+			}
+			// the update kept aside was taken by the worker in the meantime, keep a new one
+		}
+		long count = merged.incrementAndGet();
+		logger.debug("Update queue full, folded update of " + planKey + " into a full update (" + count
+				+ " so far)");
+		lane.offer(WAKE_UP);
+	}
+
+	/**
+	 * @return the number of updates waiting in all lanes, including those kept aside
+	 */
+	int getQueueDepth() {
+		int depth = 0;
+		for (int i = 0; i < lanes.size(); i++) {
+			depth += lanes.get(i).size() + overflows.get(i).size();
+		}
+		return depth;
+	}
+
+	/**
+	 * @return the number of updates folded into a full update because their lane was full
+	 */
+	long getMergedCount() {
+		return merged.get();
+	}
+
+	void shutdown() {
+		running = false;
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+	}
+
+	// Run the updates of the given lane one at a time until shut down, and the updates
+	// kept aside whenever the lane has been caught up with.
+	private void work(BlockingQueue<Runnable> lane, ConcurrentMap<String, Boolean> overflow) {
+		while (running) {
+			Runnable update = lane.poll();
+			if (update == null) {
+				update = takeOverflow(overflow);
+			}
+			if (update == null) {
+				try {
+					update = lane.take();
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+
+			try {
+				update.run();
+			} catch (RuntimeException e) {
+				logger.error("Plan update failed", e);
+			}
+		}
+	}
+
+	// Take one of the updates kept aside, as a full update of its plan, or return null
+	// if there is none.
+	private Runnable takeOverflow(ConcurrentMap<String, Boolean> overflow) {
+		Iterator<Map.Entry<String, Boolean>> entries = overflow.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<String, Boolean> entry = entries.next();
+			final String planKey = entry.getKey();
+			final Boolean updateUptimeGrade = overflow.remove(planKey);
+			if (updateUptimeGrade != null) {
+				return new Runnable() {
+
+					@Override
+					public void run() {
+						handler.update(planKey, updateUptimeGrade);
+					}
+				};
+			}
+		}
+		return null;
+	}
+}
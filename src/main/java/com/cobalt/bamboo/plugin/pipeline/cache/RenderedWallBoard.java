@@ -0,0 +1,103 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of the whole wallboard at one version of the cache, together with
+ * its JSON rendering as UTF-8 bytes, so that it can be served to any number of
+ * clients without rendering it again.
+ *
+ * Some values shown on the board depend on the current time (uptime percentage, days
+ * since last deployment) or change without going through the cache (progress of
+ * builds in progress), so a rendering also expires after a while.
+ */
+public final class RenderedWallBoard {
+	private static final ObjectWriter WRITER = new ObjectMapper().writer();
+	// maximum age of a rendering
+	private static final long MAX_AGE = 30 * 1000;
+	// maximum age of a rendering that shows builds in progress
+	private static final long MAX_AGE_IN_PROGRESS = 2 * 1000;
+
+	private final long version;
+	private final List<WallBoardData> data;
+	private final byte[] json;
+	private final long expiresAt;
+
+	private RenderedWallBoard(long version, List<WallBoardData> data, byte[] json, long expiresAt) {
+		this.version = version;
+		this.data = data;
+		this.json = json;
+		this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * Render the given WallBoardData as the board of the given version.
+	 *
+	 * @param version of the cache the data belongs to
+	 * @param values WallBoardData of all the plans
+	 * @return the rendered board
+	 * @throws IOException if the data can't be rendered to JSON
+	 */
+	static RenderedWallBoard render(long version, Collection<WallBoardData> values) throws IOException {
+		List<WallBoardData> data = Collections.unmodifiableList(new ArrayList<WallBoardData>(values));
+
+		boolean inProgress = false;
+		for (WallBoardData wallBoardData : data) {
+			if (wallBoardData.isBuildInProgress()) {
+				inProgress = true;
+				break;
+			}
+		}
+
+		byte[] json = WRITER.writeValueAsBytes(data);
+		long expiresAt = System.currentTimeMillis() + (inProgress ? MAX_AGE_IN_PROGRESS : MAX_AGE);
+		return new RenderedWallBoard(version, data, json, expiresAt);
+	}
+
+	/**
+	 * Return true if this rendering still represents the board of the given version
+	 * at the given time.
+	 */
+	boolean isCurrent(long currentVersion, long now) {
+		return version == currentVersion && now < expiresAt;
+	}
+
+	/**
+	 * @return the version of the cache this board was rendered from
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return an unmodifiable list of the WallBoardData of all plans
+	 */
+	public List<WallBoardData> getData() {
+		return data;
+	}
+
+	/**
+	 * @return the length of the JSON rendering in bytes
+	 */
+	public int getJsonLength() {
+		return json.length;
+	}
+
+	/**
+	 * Write the JSON rendering (UTF-8) of this board to the given stream.
+	 *
+	 * @param out to write to
+	 * @throws IOException if the stream can't be written
+	 */
+	public void writeJsonTo(OutputStream out) throws IOException {
+		out.write(json);
+	}
+}
@@ -1,52 +1,277 @@
 package com.cobalt.bamboo.plugin.pipeline.cache;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Cache that stores all the data that is directly shown on the Pipeline wallboard.
  * This cache is thread safe using Java's Concurrent Map.
+ *
+ * Every change to the cache bumps a global version number, and the version of the
+ * last change is kept per plan, so that clients can ask for just the changes since
+ * the version they already have.
+ *
+ * Readers of the whole board get an immutable, pre-rendered RenderedWallBoard. It is
+ * rendered once per version by the first reader that needs it, and published through
+ * an AtomicReference, so that all other readers get it without locking or copying.
  */
 public class WallBoardCache {
+	// Number of removed plans remembered for delta requests. Clients that are further
+	// behind than that get the full board.
+	private static final int MAX_REMOVED_PLANS = 1000;
+
 	private ConcurrentMap<String, WallBoardData> cache;
-	
+	private ConcurrentMap<String, Long> planVersions;
+	private ConcurrentMap<String, Long> removedPlans;
+	private final AtomicLong version;
+	// Held while a version is bumped and recorded against its plans, and while a reader
+	// takes the current version, so that a reader never gets a version whose changes
+	// aren't recorded yet.
+	private final Object versionLock = new Object();
+	// oldest version a delta can be computed from
+	private volatile long deltaFloor;
+	private final AtomicReference<RenderedWallBoard> rendered;
+	private final Object renderLock = new Object();
+
 	public WallBoardCache() {
 		cache = new ConcurrentHashMap<String, WallBoardData>();
+		planVersions = new ConcurrentHashMap<String, Long>();
+		removedPlans = new ConcurrentHashMap<String, Long>();
+		// Versions start from the current time (scaled so that a thousand changes per
+		// millisecond can happen without overlap), so that the versions held by clients
+		// of a previous instance of the cache are never mistaken for current ones.
+		version = new AtomicLong(System.currentTimeMillis() * 1000);
+		deltaFloor = version.get();
+		rendered = new AtomicReference<RenderedWallBoard>();
 	}
-	
+
+	/**
+	 * Put the given WallBoardData into the cache, whatever data of the plan it holds.
+	 * Only for data loaded from scratch, e.g. by a full refresh, which is authoritative
+	 * even over data of a newer build, e.g. one whose results were deleted since.
+	 *
+	 * @param planKey of the plan
+	 * @param wallBoardData to put
+	 */
 	public void put(String planKey, WallBoardData wallBoardData) {
 		cache.put(planKey, wallBoardData);
+		markChanged(planKey);
+	}
+
+	/**
+	 * Put the given WallBoardData into the cache, unless the cache already holds data
+	 * of the plan, e.g. to restore data that the cache may have loaded since.
+	 *
+	 * @param planKey of the plan
+	 * @param wallBoardData to put
+	 * @return true if the data was put, false if the cache already held data of the plan
+	 */
+	public boolean putIfAbsent(String planKey, WallBoardData wallBoardData) {
+		if (cache.putIfAbsent(planKey, wallBoardData) != null) {
+			return false;
+		}
+		markChanged(planKey);
+		return true;
+	}
+
+	/**
+	 * Replace the given data of the plan with the given WallBoardData, unless the cache
+	 * no longer holds the given data, e.g. to put a patch of that data.
+	 *
+	 * @param planKey of the plan
+	 * @param expected data of the plan the new data was computed from
+	 * @param wallBoardData to put
+	 * @return true if the data was put, false if the data of the plan changed since
+	 */
+	public boolean replace(String planKey, WallBoardData expected, WallBoardData wallBoardData) {
+		if (!cache.replace(planKey, expected, wallBoardData)) {
+			return false;
+		}
+		markChanged(planKey);
+		return true;
+	}
+
+	/**
+	 * Put the given WallBoardData into the cache, unless the cache already holds data
+	 * of the plan that reflects a newer build (or a later state of the same build).
+	 * The check and the put are a single compare-and-set, so updates computed out of
+	 * order never overwrite newer data.
+	 *
+	 * @param planKey of the plan
+	 * @param wallBoardData to put
+	 * @return true if the data was put, false if it was discarded as outdated
+	 */
+	public boolean putIfNewer(String planKey, WallBoardData wallBoardData) {
+		if (!replaceIfNewer(planKey, wallBoardData)) {
+			return false;
+		}
+		markChanged(planKey);
+		return true;
 	}
-	
+
 	public boolean isEmpty() {
 		return cache.isEmpty();
 	}
-	
+
 	public List<WallBoardData> getAllWallBoardData() {
         List<WallBoardData> resultList = new ArrayList<WallBoardData>(cache.values());
         return resultList;
     }
-	
+
 	public WallBoardData get(String planKey) {
 		return cache.get(planKey);
 	}
-	
+
 	public boolean containsPlan(String planKey) {
 		return cache.containsKey(planKey);
 	}
-	
+
 	public void clear() {
 		cache.clear();
+		synchronized (versionLock) {
+			planVersions.clear();
+			removedPlans.clear();
+			deltaFloor = version.incrementAndGet();
+		}
 	}
-	
+
 	public Set<String> getAllPlanKeys() {
 		return cache.keySet();
 	}
-	
+
 	public void removePlan(String planKey) {
-		cache.remove(planKey);
+		if (cache.remove(planKey) != null) {
+			synchronized (versionLock) {
+				planVersions.remove(planKey);
+				removedPlans.put(planKey, version.incrementAndGet());
+			}
+			if (removedPlans.size() > MAX_REMOVED_PLANS) {
+				pruneRemovedPlans();
+			}
+		}
+	}
+
+	/**
+	 * Get the current version of the cache, which is bumped on every change.
+	 *
+	 * @return the current version
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Get the whole board, rendered for the current version of the cache.
+	 *
+	 * @return the immutable, pre-rendered board
+	 * @throws IOException if the board can't be rendered
+	 */
+	public RenderedWallBoard getRenderedWallBoard() throws IOException {
+		RenderedWallBoard current = rendered.get();
+		if (current != null && current.isCurrent(version.get(), System.currentTimeMillis())) {
+			return current;
+		}
+
+		synchronized (renderLock) {
+			// another reader may have rendered it while this one was waiting
+			long currentVersion = version.get();
+			current = rendered.get();
+			if (current == null || !current.isCurrent(currentVersion, System.currentTimeMillis())) {
+				current = RenderedWallBoard.render(currentVersion, cache.values());
+				rendered.set(current);
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Get the plans that were added, changed or removed after the given version.
+	 * Plans with a build in progress are always included, since their progress
+	 * changes without going through the cache.
+	 * If the given version is too old (or 0), the delta contains the full board.
+	 *
+	 * @param since version the client already has
+	 * @return the changes since the given version
+	 */
+	public WallBoardDelta getChangesSince(long since) {
+		// every change up to this version is recorded in planVersions or removedPlans
+		long currentVersion;
+		synchronized (versionLock) {
+			currentVersion = version.get();
+		}
+
+		if (since <= 0 || since < deltaFloor || since > currentVersion) {
+			return new WallBoardDelta(currentVersion, true, getAllWallBoardData(), new ArrayList<String>());
+		}
+
+		List<WallBoardData> changed = new ArrayList<WallBoardData>();
+		for (Map.Entry<String, Long> entry : planVersions.entrySet()) {
+			WallBoardData wallBoardData = cache.get(entry.getKey());
+			if (wallBoardData != null && (entry.getValue() > since || wallBoardData.isBuildInProgress())) {
+				changed.add(wallBoardData);
+			}
+		}
+
+		List<String> removed = new ArrayList<String>();
+		for (Map.Entry<String, Long> entry : removedPlans.entrySet()) {
+			if (entry.getValue() > since) {
+				removed.add(entry.getKey());
+			}
+		}
+
+		return new WallBoardDelta(currentVersion, false, changed, removed);
+	}
+
+	// Record a change of the given plan. The version is bumped after the data is in
+	// place, and recorded against the plan before any reader can get it, so a client
+	// that has seen this version has also seen the data.
+	private void markChanged(String planKey) {
+		synchronized (versionLock) {
+			removedPlans.remove(planKey);
+			planVersions.put(planKey, version.incrementAndGet());
+		}
+	}
+
+	// Compare-and-set the data of the given plan, unless the cache holds newer data.
+	// Return true if the data was put, false otherwise.
+	private boolean replaceIfNewer(String planKey, WallBoardData wallBoardData) {
+		while (true) {
+			WallBoardData current = cache.get(planKey);
+			if (current == null) {
+				if (cache.putIfAbsent(planKey, wallBoardData) == null) {
+					return true;
+				}
+			} else if (wallBoardData.isOlderThan(current)) {
+				return false;
+			} else if (cache.replace(planKey, current, wallBoardData)) {
+				return true;
+			}
+			// another update won the race, check against its data
+		}
+	}
+
+	// Forget the older half of the removed plans, and raise the floor so that clients
+	// older than what is remembered get the full board.
+	private synchronized void pruneRemovedPlans() {
+		List<Long> versions = new ArrayList<Long>(removedPlans.values());
+		if (versions.size() <= MAX_REMOVED_PLANS) {
+			return;
+		}
+		Collections.sort(versions);
+		long newFloor = versions.get(versions.size() / 2);
+		for (Map.Entry<String, Long> entry : removedPlans.entrySet()) {
+			if (entry.getValue() <= newFloor) {
+				removedPlans.remove(entry.getKey(), entry.getValue());
+			}
+		}
+		deltaFloor = Math.max(deltaFloor, newFloor);
 	}
 }
@@ -1,16 +1,70 @@
 package com.cobalt.bamboo.plugin.pipeline.cache;
 
+import com.cobalt.bamboo.plugin.pipeline.domain.model.Build;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.PipelineState;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.PlanDurations;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.ProjectReport;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.UptimeGrade;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.UptimeWindows;
+
+import java.util.Date;
 
 public class WallBoardData {
+	private static final long NONE = Long.MIN_VALUE;
+
 	public String planKey;
     public ProjectReport cdresult;
     public UptimeGrade uptimeGrade;
+    public UptimeWindows uptimeWindows;
+    // Served on their own, merged with other plans, rather than on the board.
+    // Access modifier left out intentionally so it isn't serialized.
+    PlanDurations durations;
 
-    public WallBoardData(String planKey, ProjectReport cdresult, UptimeGrade uptimeGrade) {
+    // The build this data reflects: its number, when it completed and when the plan
+    // last changed. Access modifiers left out intentionally so they aren't serialized.
+    final long buildNumber;
+    final long completedTime;
+    final long lastUpdateTime;
+
+    public WallBoardData(String planKey, ProjectReport cdresult, UptimeGrade uptimeGrade,
+    		UptimeWindows uptimeWindows, PlanDurations durations) {
         this.planKey = planKey;
         this.cdresult = cdresult;
 		this.uptimeGrade = uptimeGrade;
+		this.uptimeWindows = uptimeWindows;
+		this.durations = durations;
+
+		Build currentBuild = cdresult == null ? null : cdresult.getCurrentBuild();
+		this.buildNumber = currentBuild == null ? NONE : currentBuild.getBuildNumber();
+		this.completedTime = currentBuild == null ? NONE : toTime(currentBuild.getBuildCompletedDate());
+		this.lastUpdateTime = cdresult == null ? NONE : toTime(cdresult.getLastUpdateTime());
 	}
+
+    // Return true if the current build of this plan is in progress.
+    // Access modifier left out intentionally so it isn't serialized.
+    boolean isBuildInProgress() {
+        if (cdresult == null) {
+            return false;
+        }
+        Build currentBuild = cdresult.getCurrentBuild();
+        return currentBuild != null && currentBuild.getCDPipelineState() == PipelineState.CD_IN_PROGRESS;
+    }
+
+    // Return true if this data reflects an older state of the plan than the given
+    // data: an older build, the same build before its last change, or the same build
+    // before it completed. The last change comes before the completion so that a
+    // build whose failed jobs are rerun can go back to in progress.
+    boolean isOlderThan(WallBoardData other) {
+        if (buildNumber != other.buildNumber) {
+            return buildNumber < other.buildNumber;
+        }
+        if (lastUpdateTime != other.lastUpdateTime) {
+            return lastUpdateTime < other.lastUpdateTime;
+        }
+        return completedTime < other.completedTime;
+    }
+
+    private static long toTime(Date date) {
+        return date == null ? NONE : date.getTime();
+    }
 }
@@ -0,0 +1,90 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes of the wallboard since a version the client already has.
+ */
+public class WallBoardDelta {
+	private final long version;
+	private final boolean full;
+	private final List<WallBoardData> changed;
+	private final List<String> removed;
+	private boolean loading;
+	private int loadedPlans;
+	private int totalPlans;
+
+	/**
+	 * Construct a WallBoardDelta.
+	 *
+	 * @param version of the cache this delta brings the client up to
+	 * @param full true if changed holds the full board and the client should drop
+	 *             everything it has
+	 * @param changed plans that were added or changed
+	 * @param removed plan keys of the plans that were removed
+	 */
+	public WallBoardDelta(long version, boolean full, List<WallBoardData> changed, List<String> removed) {
+		this.version = version;
+		this.full = full;
+		this.changed = changed;
+		this.removed = removed;
+	}
+
+	/**
+	 * @return the version of the cache this delta brings the client up to
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return true if this delta holds the full board, false otherwise
+	 */
+	public boolean isFull() {
+		return full;
+	}
+
+	/**
+	 * @return the plans that were added or changed
+	 */
+	public List<WallBoardData> getChanged() {
+		return Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * @return the plan keys of the plans that were removed
+	 */
+	public List<String> getRemoved() {
+		return Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * @return true if the cache is still being loaded and this delta only holds the
+	 *         plans loaded so far, false otherwise
+	 */
+	public boolean isLoading() {
+		return loading;
+	}
+
+	/**
+	 * @return the number of plans loaded so far, while the cache is being loaded
+	 */
+	public int getLoadedPlans() {
+		return loadedPlans;
+	}
+
+	/**
+	 * @return the number of plans to load, while the cache is being loaded
+	 */
+	public int getTotalPlans() {
+		return totalPlans;
+	}
+
+	// Mark this delta as taken from a cache that is still being loaded.
+	void setLoadingProgress(int loadedPlans, int totalPlans) {
+		this.loading = true;
+		this.loadedPlans = loadedPlans;
+		this.totalPlans = totalPlans;
+	}
+}
@@ -0,0 +1,126 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import com.cobalt.bamboo.plugin.pipeline.domain.model.PlanDurations;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.ProjectReport;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.UptimeGrade;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.UptimeWindows;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact binary snapshot of the WallBoardCache kept on disk, so that the wallboard
+ * can be served right after a restart while the cache is reconciled with the
+ * database in the background.
+ *
+ * The file starts with a magic number, the format version, the time it was saved and
+ * the number of entries, followed by one entry (plan key, ProjectReport, UptimeGrade,
+ * UptimeWindows, PlanDurations) per plan. A snapshot of another format version is ignored.
+ */
+class WallBoardSnapshotFile {
+	private static final int MAGIC = 0x50495045;	// "PIPE"
+	private static final int FORMAT_VERSION = 5;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Path path;
+
+	WallBoardSnapshotFile(File file) {
+		this.path = file.toPath();
+	}
+
+	/**
+	 * Write the given WallBoardData into the snapshot, replacing the previous one.
+	 * The snapshot is written into a temporary file first and then moved over the
+	 * old one, so a crash never leaves a half written snapshot behind.
+	 *
+	 * @param data to write
+	 * @return number of entries written
+	 * @throws IOException if the snapshot can't be written
+	 */
+	int save(Collection<WallBoardData> data) throws IOException {
+		Files.createDirectories(path.getParent());
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+		List<WallBoardData> entries = new ArrayList<WallBoardData>(data.size());
+		for (WallBoardData wallBoardData : data) {
+			if (wallBoardData.cdresult != null && wallBoardData.uptimeGrade != null
+					&& wallBoardData.uptimeWindows != null && wallBoardData.durations != null) {
+				entries.add(wallBoardData);
+			}
+		}
+
+		FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(entries.size());
+			for (WallBoardData wallBoardData : entries) {
+				out.writeUTF(wallBoardData.planKey);
+				wallBoardData.cdresult.writeTo(out);
+				wallBoardData.uptimeGrade.writeTo(out);
+				wallBoardData.uptimeWindows.writeTo(out);
+				wallBoardData.durations.writeTo(out);
+			}
+			out.flush();
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+
+		Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return entries.size();
+	}
+
+	/**
+	 * Read all the WallBoardData from the snapshot.
+	 *
+	 * @return the WallBoardData in the snapshot. Empty if there is no snapshot or the
+	 *         snapshot was written in another format version.
+	 * @throws IOException if the snapshot can't be read or is corrupted
+	 */
+	List<WallBoardData> load() throws IOException {
+		List<WallBoardData> results = new ArrayList<WallBoardData>();
+		if (!Files.isRegularFile(path)) {
+			return results;
+		}
+
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				return results;
+			}
+			in.readLong();	// saved time
+			int numEntries = in.readInt();
+			for (int i = 0; i < numEntries; i++) {
+				String planKey = in.readUTF();
+				ProjectReport projectReport = ProjectReport.readFrom(in);
+				UptimeGrade uptimeGrade = UptimeGrade.readFrom(in);
+				UptimeWindows uptimeWindows = UptimeWindows.readFrom(in);
+				PlanDurations durations = PlanDurations.readFrom(in);
+				results.add(new WallBoardData(planKey, projectReport, uptimeGrade, uptimeWindows, durations));
+			}
+		} finally {
+			channel.close();
+		}
+		return results;
+	}
+}
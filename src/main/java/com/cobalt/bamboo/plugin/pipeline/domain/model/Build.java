@@ -3,21 +3,112 @@ package com.cobalt.bamboo.plugin.pipeline.domain.model;
 import com.atlassian.bamboo.chains.ChainResultsSummary;
 import com.atlassian.bamboo.progressbar.ProgressBar;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Date;
 
+/**
+ * An immutable snapshot of a build. The values needed by the wallboard are copied out
+ * of the build result when the Build is constructed, so that the cache never keeps
+ * Bamboo's entities (and everything reachable from them) alive, and reading a Build
+ * never goes to the database.
+ */
 public class Build {
-	private ChainResultsSummary buildResult;
-	private ProgressBar progressBar;
+	// epoch time standing for a missing date
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	private final String buildKey;
+	private final int buildNumber;
+	private final PipelineState state;
+	private final long completedTime;
+	private final boolean successful;
+	private final long duration;
+	// Progress of a build that is currently building. The ProgressBar reads Bamboo's
+	// in-memory execution status, not the database, so it is kept to show live progress.
+	private final ProgressBar progressBar;
+	// progress of a Build restored from a snapshot
+	private final double percentageCompleted;
+	private final String timeRemaining;
 
 	/**
 	 * Constructs a Build object
 	 * 
-	 * @param buildResult from Bamboo to construct off of
+	 * @param buildResult from Bamboo to construct off of, null if there are no builds yet
 	 * @param progressBar for builds that are currently building
 	 */
 	public Build(ChainResultsSummary buildResult, ProgressBar progressBar){
-		this.buildResult = buildResult;
 		this.progressBar = progressBar;
+		this.percentageCompleted = -1;
+		this.timeRemaining = null;
+		if (buildResult == null) {
+			this.buildKey = null;
+			this.buildNumber = -1;
+			this.state = PipelineState.CD_NOT_BUILT;
+			this.completedTime = NO_DATE;
+			this.successful = false;
+			this.duration = 0;
+		} else {
+			this.buildKey = buildResult.getBuildResultKey();
+			this.buildNumber = buildResult.getBuildNumber();
+			this.state = getCDPipelineState(buildResult);
+			this.completedTime = toTime(buildResult.getBuildCompletedDate());
+			this.successful = buildResult.isSuccessful();
+			this.duration = buildResult.getDuration();
+		}
+	}
+
+	/*
+	 * Constructs a Build restored from a snapshot, without a live build result.
+	 */
+	private Build(String buildKey, int buildNumber, PipelineState state, Date completedDate,
+					boolean successful, long duration, double percentageCompleted, String timeRemaining) {
+		this.buildKey = buildKey;
+		this.buildNumber = buildNumber;
+		this.state = state;
+		this.completedTime = toTime(completedDate);
+		this.successful = successful;
+		this.duration = duration;
+		this.progressBar = null;
+		this.percentageCompleted = percentageCompleted;
+		this.timeRemaining = timeRemaining;
+	}
+
+	/**
+	 * Write the current values of this build into the given snapshot output.
+	 * 
+	 * @param out to write to
+	 * @throws IOException if the output can't be written
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		SnapshotFormat.writeString(out, getBuildKey());
+		out.writeInt(getBuildNumber());
+		SnapshotFormat.writeEnum(out, getCDPipelineState());
+		SnapshotFormat.writeDate(out, getBuildCompletedDate());
+		out.writeBoolean(isSuccessful());
+		out.writeLong(duration);
+		out.writeDouble(getPercentageCompleted());
+		SnapshotFormat.writeString(out, getTimeRemaining());
+	}
+
+	/**
+	 * Read a build previously written by {@link #writeTo(DataOutput)}.
+	 * 
+	 * @param in to read from
+	 * @return the restored build
+	 * @throws IOException if the input can't be read or is corrupted
+	 */
+	public static Build readFrom(DataInput in) throws IOException {
+		String buildKey = SnapshotFormat.readString(in);
+		int buildNumber = in.readInt();
+		PipelineState state = SnapshotFormat.readEnum(in, PipelineState.class);
+		Date completedDate = SnapshotFormat.readDate(in);
+		boolean successful = in.readBoolean();
+		long duration = in.readLong();
+		double percentageCompleted = in.readDouble();
+		String timeRemaining = SnapshotFormat.readString(in);
+		return new Build(buildKey, buildNumber, state, completedDate, successful, duration, percentageCompleted,
+				timeRemaining);
 	}
 
 	/**
@@ -27,11 +118,7 @@ public class Build {
 	 * @return build key
 	 */
 	public String getBuildKey() {
-		if (buildResult == null) {
-			return null;
-		} else {
-			return buildResult.getBuildResultKey();
-		}
+		return buildKey;
 	}
 
 	/**
@@ -41,11 +128,7 @@ public class Build {
 	 * @return build number
 	 */
 	public int getBuildNumber() {
-		if (buildResult == null) {
-			return -1;
-		} else {
-			return buildResult.getBuildNumber();
-		}
+		return buildNumber;
 	}
 
 	/**
@@ -55,26 +138,13 @@ public class Build {
 	 * @return the CDPipelineState, which can be CD_SUCCESS, CD_FAILED, CD_IN_PROGRESS, 
 	 * 			CD_NOT_BUILT, CD_MANUALLY_PAUSED
 	 */
-    public PipelineState getCDPipelineState() {
-        if (buildResult == null) {
-            return PipelineState.CD_NOT_BUILT;
-        } else {
-            if (buildResult.isSuccessful()) {
-				if (buildResult.isContinuable()) {
-                    return PipelineState.CD_MANUALLY_PAUSED;
-                } else {
-                    return PipelineState.CD_SUCCESS;
-                }
-            } else if (buildResult.isFailed()) {
-                return PipelineState.CD_FAILED;
-            } else if (buildResult.isInProgress() || getPercentageCompleted() > 0) {
-                return PipelineState.CD_IN_PROGRESS;
-            } else if (buildResult.isQueued()) {
-                return PipelineState.CD_QUEUED;
-            } else {
-                return PipelineState.CD_NOT_BUILT;
-            }
-        }
+	public PipelineState getCDPipelineState() {
+		// the build may have started since this Build was constructed
+		if ((state == PipelineState.CD_QUEUED || state == PipelineState.CD_NOT_BUILT)
+				&& getPercentageCompleted() > 0) {
+			return PipelineState.CD_IN_PROGRESS;
+		}
+		return state;
 	}
 	
 	/**
@@ -87,7 +157,7 @@ public class Build {
 		if (progressBar != null) {
 			return progressBar.getPercentageCompleted();
 		}
-		return -1;
+		return percentageCompleted;
 	}
 	
 	/**
@@ -100,7 +170,7 @@ public class Build {
 		if (progressBar != null) {
 			return progressBar.getPrettyTimeRemaining(false);
 		}
-		return null;
+		return timeRemaining;
 	}
 	
 	/**
@@ -109,10 +179,7 @@ public class Build {
 	 * @return the completed Date of this build.
 	 */
 	public Date getBuildCompletedDate() {
-		if(buildResult == null){
-			return null;
-		}
-		return buildResult.getBuildCompletedDate();
+		return toDate(completedTime);
 	}
 	
 	/**
@@ -121,9 +188,43 @@ public class Build {
 	 * @return true if this build is successful, false otherwise.
 	 */
 	public boolean isSuccessful() {
-		if(buildResult == null){
-			return false;
+		return successful;
+	}
+
+	/**
+	 * Return the duration of this build, in milliseconds, 0 if there are no builds yet.
+	 * Access modifier left out intentionally so it isn't serialized.
+	 * 
+	 * @return the duration of this build.
+	 */
+	long getDuration() {
+		return duration;
+	}
+
+	// Return the CDPipelineState of the given build result.
+	private PipelineState getCDPipelineState(ChainResultsSummary buildResult) {
+		if (buildResult.isSuccessful()) {
+			if (buildResult.isContinuable()) {
+				return PipelineState.CD_MANUALLY_PAUSED;
+			} else {
+				return PipelineState.CD_SUCCESS;
+			}
+		} else if (buildResult.isFailed()) {
+			return PipelineState.CD_FAILED;
+		} else if (buildResult.isInProgress() || getPercentageCompleted() > 0) {
+			return PipelineState.CD_IN_PROGRESS;
+		} else if (buildResult.isQueued()) {
+			return PipelineState.CD_QUEUED;
+		} else {
+			return PipelineState.CD_NOT_BUILT;
 		}
-		return buildResult.isSuccessful();
+	}
+
+	private static long toTime(Date date) {
+		return date == null ? NO_DATE : date.getTime();
+	}
+
+	private static Date toDate(long time) {
+		return time == NO_DATE ? null : new Date(time);
 	}
 }
@@ -0,0 +1,17 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+
+/**
+ * Computes something out of the build history of a plan, one build at a time, as the
+ * history is read by a BuildHistoryScanner.
+ */
+public interface BuildHistoryAggregator {
+
+	/**
+	 * Add the given build, which is older than all the builds already added.
+	 * @param build the build to add
+	 * @return true if older builds are still needed, false once the aggregator is done
+	 */
+	public boolean addOlderBuild(ResultsSummary build);
+}
@@ -0,0 +1,392 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.commit.Commit;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * In-memory index of the most recent completed builds of a plan, kept as primitive
+ * columns ordered by completed time: a sorted long[] of completed times, an int[] of
+ * build numbers, the number of dated commits of each build and their dates summed
+ * up, and bitsets of the successful builds and of the pipeline completions
+ * (deployments). Questions about the recent history of the plan, such as the number
+ * of deployments in a window, are answered by binary searches and bit counts instead
+ * of walks over the builds. It backs the delivery metrics only: the uptime grade and
+ * windows are streamed into their own accumulators by the walk over the history.
+ *
+ * The index holds at most CAPACITY builds, in arrays of fixed size. Once it is full,
+ * the oldest builds are dropped a quarter at a time, so the index costs the same
+ * whatever the history of the plan. The rows are kept in a window of the arrays that
+ * can grow both ways, so that older builds are put in front of it while the index is
+ * loaded and newer builds are appended after it, both without moving the other rows.
+ *
+ * The index is loaded from the history of the plan, newest build first, as a
+ * BuildHistoryAggregator that stops once it is full. After that it is kept up to
+ * date by adding each build as it completes. A build that completes again, e.g. once
+ * it is rerun or its manual stage is run, replaces its previous row.
+ * This class is thread safe.
+ */
+public class BuildHistoryIndex implements BuildHistoryAggregator {
+	static final int CAPACITY = 2048;
+	// number of the oldest builds dropped at once when a newer build is added to a
+	// full index
+	private static final int DROP_SIZE = CAPACITY / 4;
+
+	// the rows are at positions [first, first + size), oldest first
+	private final long[] completedTimes;
+	private final int[] buildNumbers;
+	private final int[] numDatedCommits;
+	private final long[] commitTimeSums;
+	private final BitSet successful;
+	private final BitSet completions;
+	private int first;
+	private int size;
+	private int lastBuildNumber;
+	// whether builds older than the oldest row were left out or dropped
+	private boolean truncated;
+
+	/**
+	 * Construct an empty BuildHistoryIndex.
+	 */
+	public BuildHistoryIndex() {
+		this.completedTimes = new long[CAPACITY];
+		this.buildNumbers = new int[CAPACITY];
+		this.numDatedCommits = new int[CAPACITY];
+		this.commitTimeSums = new long[CAPACITY];
+		this.successful = new BitSet(CAPACITY);
+		this.completions = new BitSet(CAPACITY);
+		this.first = CAPACITY;
+		this.lastBuildNumber = -1;
+	}
+
+	/**
+	 * Add the given build, which must be older than all the builds already added.
+	 * Builds that aren't completed are ignored.
+	 * @param build the build to add
+	 * @return false once the index is full, true otherwise
+	 */
+	@Override
+	public boolean addOlderBuild(ResultsSummary build) {
+		Date completedDate = build.getBuildCompletedDate();
+		if (completedDate == null) {
+			return true;
+		}
+		synchronized (this) {
+			if (size == CAPACITY) {
+				truncated = true;
+				return false;
+			}
+		}
+		put(build, completedDate.getTime(), false);
+		return true;
+	}
+
+	/**
+	 * Add the given build, if it is completed and not in the index as it is yet. A
+	 * build already in the index is replaced. Builds usually complete in order, in
+	 * which case they are appended. The commits of the build are only read if it is
+	 * added.
+	 * @param build to add
+	 * @return true if the build was added or replaced, false otherwise
+	 */
+	public boolean addBuild(ResultsSummary build) {
+		Date completedDate = build.getBuildCompletedDate();
+		if (completedDate == null) {
+			return false;
+		}
+		long completedTime = completedDate.getTime();
+		synchronized (this) {
+			int existing = indexOf(build.getBuildNumber());
+			if (existing >= 0 && completedTimes[existing] == completedTime
+					&& successful.get(existing) == build.isSuccessful()
+					&& completions.get(existing) == ChangeListFactory.isCompletion(build)) {
+				return false;
+			}
+		}
+		return put(build, completedTime, true);
+	}
+
+	/**
+	 * @return the number of completed builds in the index
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return the highest build number in the index, -1 if the index is empty
+	 */
+	public synchronized int getLastBuildNumber() {
+		return lastBuildNumber;
+	}
+
+	/**
+	 * @return the number of pipeline completions (deployments) in the index
+	 */
+	public synchronized int countDeployments() {
+		return completions.cardinality();
+	}
+
+	/**
+	 * Count the pipeline completions (deployments) in the given window.
+	 * @param from start of the window, inclusive
+	 * @param to end of the window, exclusive
+	 * @return the number of deployments in the window
+	 */
+	public synchronized int countDeploymentsBetween(long from, long to) {
+		int lo = lowerBound(from);
+		int hi = lowerBound(to);
+		return hi <= lo ? 0 : completions.get(lo, hi).cardinality();
+	}
+
+	/**
+	 * Get the average time from a commit to the deployment that shipped it, over the
+	 * most recent deployments. A deployment ships the commits of its own build and of
+	 * the builds completed since the previous deployment. A deployment whose builds
+	 * may reach back past the oldest build kept doesn't count.
+	 * @param maxDeployments number of the most recent deployments to look at
+	 * @return the average lead time, in milliseconds, -1 if no deployed commit has a date
+	 */
+	public synchronized long getAverageLeadTime(int maxDeployments) {
+		long totalLeadTime = 0;
+		long numCommits = 0;
+		int numDeployments = 0;
+		int deployment = completions.previousSetBit(first + size - 1);
+		while (deployment >= 0 && numDeployments < maxDeployments) {
+			int previous = completions.previousSetBit(deployment - 1);
+			if (previous < 0 && truncated) {
+				break;
+			}
+			for (int i = Math.max(previous + 1, first); i <= deployment; i++) {
+				totalLeadTime += numDatedCommits[i] * completedTimes[deployment] - commitTimeSums[i];
+				numCommits += numDatedCommits[i];
+			}
+			numDeployments++;
+			deployment = previous;
+		}
+		return numCommits > 0 ? totalLeadTime / numCommits : -1;
+	}
+
+	/**
+	 * Get the ratio of the most recent deployments that were followed by a failed
+	 * build. The last deployment doesn't count until a build completes after it.
+	 * @param maxDeployments number of the most recent deployments to look at
+	 * @return ratio of failed deployments, -1 if no deployment was followed by a build
+	 */
+	public synchronized double getChangeFailureRate(int maxDeployments) {
+		int end = first + size;
+		int numDeployments = 0;
+		int withOutcome = 0;
+		int failed = 0;
+		for (int i = completions.previousSetBit(end - 1); i >= 0 && numDeployments < maxDeployments;
+				i = completions.previousSetBit(i - 1)) {
+			numDeployments++;
+			if (i < end - 1) {
+				withOutcome++;
+				if (!successful.get(i + 1)) {
+					failed++;
+				}
+			}
+		}
+		return withOutcome > 0 ? failed * 1.0 / withOutcome : -1;
+	}
+
+	/**
+	 * Get the average time from the first failed build of a failure to the successful
+	 * build that ended it, over the most recent failures that ended. A failure that
+	 * may have started before the oldest build kept doesn't count.
+	 * @param maxFailures number of the most recent failures to look at
+	 * @return the mean time to restore, in milliseconds, -1 if no failure ended
+	 */
+	public synchronized long getMeanTimeToRestore(int maxFailures) {
+		long totalRestoreTime = 0;
+		int numRestores = 0;
+		int restored = successful.previousSetBit(first + size - 1);
+		while (restored > first && numRestores < maxFailures) {
+			if (successful.get(restored - 1)) {
+				// skip to the last success that directly follows a failure
+				int lastFailure = successful.previousClearBit(restored - 1);
+				restored = lastFailure < first ? -1 : lastFailure + 1;
+				continue;
+			}
+			int failureStart = Math.max(successful.previousSetBit(restored - 1) + 1, first);
+			if (failureStart == first && truncated) {
+				break;
+			}
+			totalRestoreTime += completedTimes[restored] - completedTimes[failureStart];
+			numRestores++;
+			restored = successful.previousSetBit(failureStart - 1);
+		}
+		return numRestores > 0 ? totalRestoreTime / numRestores : -1;
+	}
+
+	// Put the given completed build into the index, with its commits, replacing its
+	// previous row if any. A full index drops its oldest builds for a newer build if
+	// dropOldest is set, and takes no build otherwise.
+	// Return true if the build was put, false otherwise.
+	private boolean put(ResultsSummary build, long completedTime, boolean dropOldest) {
+		// read outside of the lock, the commits may have to be loaded
+		int numDated = 0;
+		long commitTimeSum = 0;
+		List<Commit> commits = build.getCommits();
+		if (commits != null) {
+			for (Commit commit : commits) {
+				if (commit.getDate() != null) {
+					numDated++;
+					commitTimeSum += commit.getDate().getTime();
+				}
+			}
+		}
+
+		synchronized (this) {
+			int buildNumber = build.getBuildNumber();
+			int existing = indexOf(buildNumber);
+			if (existing >= 0) {
+				remove(existing);
+			}
+			if (size == CAPACITY) {
+				if (!dropOldest) {
+					truncated = true;
+					return false;
+				}
+				dropOldest(DROP_SIZE);
+			}
+
+			// keep the columns sorted by completed time
+			int position = upperBound(completedTime);
+			if (position == first && truncated && size > 0) {
+				// older than every build kept, it would be dropped again
+				return false;
+			}
+			position = insert(position);
+			completedTimes[position] = completedTime;
+			buildNumbers[position] = buildNumber;
+			numDatedCommits[position] = numDated;
+			commitTimeSums[position] = commitTimeSum;
+			successful.set(position, build.isSuccessful());
+			completions.set(position, ChangeListFactory.isCompletion(build));
+			lastBuildNumber = Math.max(lastBuildNumber, buildNumber);
+			return true;
+		}
+	}
+
+	// Return the position of the given build, -1 if it isn't in the index. Builds that
+	// complete again are usually recent, so the search starts from the newest build.
+	private int indexOf(int buildNumber) {
+		if (buildNumber > lastBuildNumber) {
+			return -1;
+		}
+		for (int i = first + size - 1; i >= first; i--) {
+			if (buildNumbers[i] == buildNumber) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// Make room for a row at the given position, moving the fewest rows, and return
+	// the position the row goes to. The index must not be full.
+	private int insert(int position) {
+		int end = first + size;
+		if (end == CAPACITY && position - first >= end - position) {
+			// no room after the rows, move them down into the middle of the room before
+			int shift = (first + 1) / 2;
+			moveRows(first, first - shift, size);
+			first -= shift;
+			position -= shift;
+			end -= shift;
+		}
+		if (first > 0 && (position - first < end - position || end == CAPACITY)) {
+			moveRows(first, first - 1, position - first);
+			first--;
+			position--;
+		} else {
+			moveRows(position, position + 1, end - position);
+		}
+		size++;
+		return position;
+	}
+
+	// Remove the row at the given position, moving the fewest rows.
+	private void remove(int position) {
+		successful.clear(position);
+		completions.clear(position);
+		int end = first + size;
+		if (position - first < end - position - 1) {
+			moveRows(first, first + 1, position - first);
+			first++;
+		} else {
+			moveRows(position + 1, position, end - position - 1);
+		}
+		size--;
+	}
+
+	// Drop the given number of the oldest rows, and move the others to the start of
+	// the arrays, so that newer builds can be appended.
+	private void dropOldest(int count) {
+		successful.clear(first, first + count);
+		completions.clear(first, first + count);
+		first += count;
+		size -= count;
+		truncated = true;
+		moveRows(first, 0, size);
+		first = 0;
+	}
+
+	// Move the given number of rows from the given position to the other one. The
+	// positions left by the rows are cleared.
+	private void moveRows(int from, int to, int count) {
+		if (count <= 0 || from == to) {
+			return;
+		}
+		System.arraycopy(completedTimes, from, completedTimes, to, count);
+		System.arraycopy(buildNumbers, from, buildNumbers, to, count);
+		System.arraycopy(numDatedCommits, from, numDatedCommits, to, count);
+		System.arraycopy(commitTimeSums, from, commitTimeSums, to, count);
+		moveBits(successful, from, to, count);
+		moveBits(completions, from, to, count);
+	}
+
+	// Return the position of the first build completed at or after the given time.
+	private int lowerBound(long time) {
+		int lo = first;
+		int hi = first + size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (completedTimes[mid] < time) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	// Return the position of the first build completed after the given time.
+	private int upperBound(long time) {
+		int lo = first;
+		int hi = first + size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (completedTimes[mid] <= time) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	// Move the given number of bits from the given position to the other one, and
+	// clear the positions they leave.
+	private static void moveBits(BitSet bits, int from, int to, int count) {
+		BitSet moved = bits.get(from, from + count);
+		bits.clear(from, from + count);
+		for (int i = moved.nextSetBit(0); i >= 0; i = moved.nextSetBit(i + 1)) {
+			bits.set(to + i);
+		}
+	}
+}
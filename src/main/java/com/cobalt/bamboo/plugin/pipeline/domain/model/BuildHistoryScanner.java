@@ -0,0 +1,101 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.plan.Plan;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads the build history of a plan once, from the newest build to the oldest, and
+ * feeds every build to all the aggregators that still need it. The history is read a
+ * page at a time and only as far back as the aggregators need, so that computing
+ * several statistics of a plan costs a single pass over its history.
+ * 
+ * Pages can grow geometrically, for walks that usually end within the first few
+ * builds but sometimes go far back: a walk over n builds then takes O(log n) reads
+ * instead of O(n) while short walks stay cheap.
+ */
+public class BuildHistoryScanner {
+	private final ResultsSummaryManager resultsSummaryManager;
+	private final int firstPageSize;
+	private final int maxPageSize;
+	
+	/**
+	 * Construct a BuildHistoryScanner that reads pages of a fixed size.
+	 * @param resultsSummaryManager to read the builds from
+	 * @param pageSize number of builds read at a time
+	 */
+	public BuildHistoryScanner(ResultsSummaryManager resultsSummaryManager, int pageSize) {
+		this(resultsSummaryManager, pageSize, pageSize);
+	}
+	
+	/**
+	 * Construct a BuildHistoryScanner whose pages double in size after each read.
+	 * @param resultsSummaryManager to read the builds from
+	 * @param firstPageSize number of builds read first
+	 * @param maxPageSize maximum number of builds read at a time
+	 */
+	public BuildHistoryScanner(ResultsSummaryManager resultsSummaryManager, int firstPageSize, int maxPageSize) {
+		this.resultsSummaryManager = resultsSummaryManager;
+		this.firstPageSize = firstPageSize;
+		this.maxPageSize = Math.max(firstPageSize, maxPageSize);
+	}
+	
+	/**
+	 * Feed the builds of the given plan to the given aggregators, newest first, until
+	 * every aggregator is done or there are no more builds.
+	 * @param plan to read the builds of
+	 * @param aggregators to feed the builds to
+	 * @return the number of builds read
+	 */
+	public int scan(Plan plan, BuildHistoryAggregator... aggregators) {
+		return scan(plan, Arrays.asList(aggregators));
+	}
+	
+	/**
+	 * Feed the builds of the given plan to the given aggregators, newest first, until
+	 * every aggregator is done or there are no more builds.
+	 * @param plan to read the builds of
+	 * @param aggregators to feed the builds to
+	 * @return the number of builds read
+	 */
+	public int scan(Plan plan, List<? extends BuildHistoryAggregator> aggregators) {
+		List<BuildHistoryAggregator> active = new ArrayList<BuildHistoryAggregator>(aggregators);
+		int numRead = 0;
+		int lastBuildNumber = Integer.MAX_VALUE;
+		
+		int pageSize = firstPageSize;
+		for (int first = 0; !active.isEmpty(); first += pageSize, pageSize = Math.min(pageSize * 2, maxPageSize)) {
+			List<ResultsSummary> page = resultsSummaryManager.getResultSummariesForPlan(plan, first, pageSize);
+			if (page == null) {
+				break;
+			}
+			
+			for (int i = 0; i < page.size() && !active.isEmpty(); i++) {
+				ResultsSummary build = page.get(i);
+				// a build started while paging shifts the pages, skip what was already read
+				if (build.getBuildNumber() >= lastBuildNumber) {
+					continue;
+				}
+				lastBuildNumber = build.getBuildNumber();
+				numRead++;
+				
+				Iterator<BuildHistoryAggregator> it = active.iterator();
+				while (it.hasNext()) {
+					if (!it.next().addOlderBuild(build)) {
+						it.remove();
+					}
+				}
+			}
+			
+			if (page.size() < pageSize) {
+				break;
+			}
+		}
+		return numRead;
+	}
+}
@@ -0,0 +1,58 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the most recent builds of a plan, newest first, back to the last pipeline
+ * completion before the newest build (included), or to the first build of the plan.
+ * These are the builds the current changes, contributors and last deployment of a
+ * plan are taken from.
+ * 
+ * The walk stops at the horizon, if any: plans with no completion within that many
+ * builds have their changes counted within the horizon only.
+ */
+public class BuildsSinceLastCompletion implements BuildHistoryAggregator {
+	/**
+	 * Maximum number of builds collected by default, set with
+	 * -Dpipeline.deployment.horizon. Zero or less collects back to the first build.
+	 */
+	public static final int DEFAULT_HORIZON = Integer.getInteger("pipeline.deployment.horizon", 0);
+	
+	private final List<ResultsSummary> builds = new ArrayList<ResultsSummary>();
+	private final int horizon;
+	
+	/**
+	 * Construct a BuildsSinceLastCompletion that stops at the default horizon.
+	 */
+	public BuildsSinceLastCompletion() {
+		this(DEFAULT_HORIZON);
+	}
+	
+	/**
+	 * Construct a BuildsSinceLastCompletion.
+	 * @param horizon maximum number of builds to collect, zero or less for no limit
+	 */
+	public BuildsSinceLastCompletion(int horizon) {
+		this.horizon = horizon;
+	}
+	
+	@Override
+	public boolean addOlderBuild(ResultsSummary build) {
+		builds.add(build);
+		if (horizon > 0 && builds.size() >= horizon) {
+			return false;
+		}
+		return builds.size() == 1 || !ChangeListFactory.isCompletion(build);
+	}
+	
+	/**
+	 * Get the builds collected so far, newest first.
+	 * @return the builds collected, empty if the plan has no builds
+	 */
+	public List<ResultsSummary> getBuilds() {
+		return builds;
+	}
+}
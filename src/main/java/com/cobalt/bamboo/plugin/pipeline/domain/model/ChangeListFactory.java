@@ -6,7 +6,6 @@ import com.atlassian.bamboo.commit.Commit;
 import com.atlassian.bamboo.commit.CommitFile;
 import com.atlassian.bamboo.resultsummary.ResultsSummary;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -14,38 +13,15 @@ import java.util.Set;
 public class ChangeListFactory {
 
 	/**
-	 * Builds the list of changes since the last pipeline completion based on the 
-	 * given build list.
+	 * Check whether the given build is a pipeline completion, i.e. it went successfully
+	 * through all of its stages.
 	 * 
-	 * @param buildList The build list to get changes from
-	 * @param contributorBuilder The contributor builder to construct picture url for 
-	 *                           the authors
-	 * @return the list of changes since last pipeline completion based on the given build
-	 *         list. List may be empty if build list is null or empty, or there are no changes.
+	 * @param build The build to check
+	 * @return true if the build is a pipeline completion, false otherwise
 	 */
-	public static List<Change> buildChangeList(List<ResultsSummary> buildList, 
-												ContributorBuilder contributorBuilder) {
-		List<Change> changeList = new ArrayList<Change>();
-		
-		if (buildList != null && buildList.size() > 0) {
-			// add changes from the current build
-			addChangesToList(changeList, buildList.get(0).getCommits(), 
-							buildList.get(0).getBuildNumber(), contributorBuilder);
-			
-			// check for pipeline completion
-			for (int i = 1; i < buildList.size(); i++) {
-				ChainResultsSummary currentBuild = (ChainResultsSummary) buildList.get(i);
-				
-				if (!currentBuild.isContinuable() && currentBuild.isSuccessful()) {
-					break;
-				}
-				
-				addChangesToList(changeList, buildList.get(i).getCommits(), 
-								currentBuild.getBuildNumber(), contributorBuilder);
-			}
-		}
-		
-		return changeList;
+	public static boolean isCompletion(ResultsSummary build) {
+		ChainResultsSummary chainBuild = (ChainResultsSummary) build;
+		return !chainBuild.isContinuable() && chainBuild.isSuccessful();
 	}
 	
 	// Construct Changes based on the Commits in given commit list and add the Changes to the
@@ -59,8 +35,6 @@ public class ChangeListFactory {
 				username = author.getName();
 			}
 			
-			Contributor contributor = contributorBuilder.createContributor(username, commit.getDate(), author.getFullName());
-			
 			// a list of changes
 			String comment = CommentModifier.removeVersionControlInfo(commit.getComment());
 			Set<String> files = new HashSet<String>();
@@ -72,7 +46,8 @@ public class ChangeListFactory {
 				revisionNum = commitFile.getRevision();			
 			}
 			
-			Change change = new Change(author.getFullName(), contributor.getPictureUrl(), buildNumber, comment, commit.getDate(), files, revisionNum);
+			String pictureUrl = contributorBuilder.getIdentity(username, author.getFullName()).getPictureUrl();
+			Change change = new Change(author.getFullName(), pictureUrl, buildNumber, comment, commit.getDate(), files, revisionNum);
 			
 			changeList.add(change);
 		}
@@ -55,18 +55,37 @@ public class CompletionStats {
 	 * @param lastCommitTime
 	 */
 	void updateContributor(String username, Date lastCommitTime){
-		if(contributors.containsKey(username)){
-			Contributor c = contributors.get(username);
-			if(lastCommitTime.compareTo(c.getLastCommitTime()) > 0){
-				contributors.put(username, new Contributor(username, c.getCommitCount() + 1, lastCommitTime, c.getFullname(), c.getPictureUrl(), c.getProfilePageUrl()));
-			} else {
-				contributors.put(username, new Contributor(username, c.getCommitCount() + 1, c.getLastCommitTime(), c.getFullname(), c.getPictureUrl(), c.getProfilePageUrl()));
-			}
+		Contributor c = contributors.get(username);
+		if(c != null){
+			// the contributor belongs to this completion only, so it is updated in place
+			c.incrementCommitCount();
+			c.updateLastCommitTime(lastCommitTime);
 		}else{
 			throw new IllegalArgumentException(username + " doesn't exist in the Contributors List.");
 		}
 	}
 	
+	/**
+	 * Add the changes and contributors of the given completion to this completion.
+	 * Contributors in both completions have their commit counts added up. The
+	 * contributors of the given completion are copied, so that the completions can
+	 * still be updated apart.
+	 * Access modifier left out intentionally for package protection.
+	 * 
+	 * @param other completion to add to this completion
+	 */
+	void addAll(CompletionStats other){
+		this.numChanges += other.numChanges;
+		for(Contributor c : other.contributors.values()){
+			Contributor existing = contributors.get(c.getUsername());
+			if(existing == null){
+				contributors.put(c.getUsername(), new Contributor(c.getIdentity(), c.getCommitCount(), c.getLastCommitTime()));
+			}else{
+				existing.addCommits(c);
+			}
+		}
+	}
+	
 	/**
 	 * Return the build number of this completion
 	 * @return build number of this completion
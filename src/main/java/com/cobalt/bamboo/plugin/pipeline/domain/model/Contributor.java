@@ -1,14 +1,15 @@
 package com.cobalt.bamboo.plugin.pipeline.domain.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Date;
 
 public class Contributor {
-	private String username;
+	// the profile of the user, shared by all of its Contributors
+	private ContributorIdentity identity;
 	private int commitCount;
 	private Date lastCommit;
-	private String fullname;
-	private String pictureUrl;
-	private String profilePageUrl;
 	
 	/**
 	 * Constructs a Contributor object.
@@ -41,12 +42,52 @@ public class Contributor {
 	 *                       null if username not found on Jira
 	 */
 	public Contributor(String username, int commitCount, Date commitTime, String fullname, String pictureUrl, String profilePageUrl) {
-		this.username = username;
+		this(new ContributorIdentity(username, fullname, pictureUrl, profilePageUrl), commitCount, commitTime);
+	}
+	
+	/**
+	 * Constructs a Contributor object of the given user.
+	 * 
+	 * @param identity Contributor's profile
+	 * @param commitCount Contributor's commits count
+	 * @param commitTime Contributor's commit date
+	 */
+	public Contributor(ContributorIdentity identity, int commitCount, Date commitTime) {
+		this.identity = identity;
 		this.commitCount = commitCount;
 		this.lastCommit = commitTime;
-		this.fullname = fullname;
-		this.pictureUrl = pictureUrl;
-		this.profilePageUrl = profilePageUrl;
+	}
+	
+	/**
+	 * Write this contributor into the given snapshot output.
+	 * 
+	 * @param out to write to
+	 * @throws IOException if the output can't be written
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeUTF(getUsername());
+		out.writeInt(commitCount);
+		SnapshotFormat.writeDate(out, lastCommit);
+		SnapshotFormat.writeString(out, getFullname());
+		SnapshotFormat.writeString(out, getPictureUrl());
+		SnapshotFormat.writeString(out, getProfilePageUrl());
+	}
+	
+	/**
+	 * Read a contributor previously written by {@link #writeTo(DataOutput)}.
+	 * 
+	 * @param in to read from
+	 * @return the restored contributor
+	 * @throws IOException if the input can't be read or is corrupted
+	 */
+	public static Contributor readFrom(DataInput in) throws IOException {
+		String username = in.readUTF();
+		int commitCount = in.readInt();
+		Date lastCommit = SnapshotFormat.readDate(in);
+		String fullname = SnapshotFormat.readString(in);
+		String pictureUrl = SnapshotFormat.readString(in);
+		String profilePageUrl = SnapshotFormat.readString(in);
+		return new Contributor(username, commitCount, lastCommit, fullname, pictureUrl, profilePageUrl);
 	}
 	
 	/**
@@ -55,7 +96,7 @@ public class Contributor {
 	 * @return the username
 	 */
 	public String getUsername() {
-		return username;
+		return identity.getUsername();
 	}
 	
 	/**
@@ -84,7 +125,7 @@ public class Contributor {
 	 *         not linked to a Bamboo user, username is returned.
 	 */
 	public String getFullname() {
-		return fullname;
+		return identity.getFullname();
 	}
 	
 	/**
@@ -93,7 +134,7 @@ public class Contributor {
 	 * @return the url of the user's profile picture from Jira.
 	 */
 	public String getPictureUrl() {
-		return pictureUrl;
+		return identity.getPictureUrl();
 	}
 	
 	/**
@@ -102,7 +143,17 @@ public class Contributor {
 	 * @return the url of the user's profile page on Jira.
 	 */
 	public String getProfilePageUrl() {
-		return profilePageUrl;
+		return identity.getProfilePageUrl();
+	}
+	
+	/**
+	 * Gets the profile of this contributor, shared by all the Contributors of the user.
+	 * Access modifier left out intentionally so it isn't serialized.
+	 * 
+	 * @return the profile of this contributor
+	 */
+	ContributorIdentity getIdentity() {
+		return identity;
 	}
 	
 	/**
@@ -123,11 +174,22 @@ public class Contributor {
 		commitCount++;
 	}
 	
+	/**
+	 * Adds the commits of the given contributor, of the same user, to the commits of
+	 * this contributor.
+	 * 
+	 * @param other contributor whose commits to add
+	 */
+	void addCommits(Contributor other){
+		commitCount += other.commitCount;
+		updateLastCommitTime(other.lastCommit);
+	}
+	
 	@Override
 	public boolean equals(Object o){
 		if (o instanceof Contributor){
 			Contributor other = (Contributor) o;
-			if(other.username.equals(this.username)){
+			if(other.getUsername().equals(this.getUsername())){
 				return true;
 			}
 		}
@@ -136,7 +198,7 @@ public class Contributor {
 	
 	@Override
 	public int hashCode(){
-		return this.username.hashCode();
+		return this.getUsername().hashCode();
 	}
 	
 }
@@ -5,14 +5,34 @@ import com.atlassian.bamboo.applinks.JiraApplinksService;
 
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class ContributorBuilder {
     private static final String JIRA_USER_AVATAR_PATH = "/secure/useravatar?ownerId=";
     private static final String JIRA_PROFILE_PATH = "/secure/ViewProfile.jspa?name=";
+    private static final String DEFAULT_PICTURE_URL = "http://lorempixel.com/32/32/cats/";
+
+    /**
+     * Maximum number of user profiles kept by a ContributorBuilder, set with
+     * -Dpipeline.contributors.cacheSize. Once it is reached, the least recently used
+     * profile is evicted to make room, as a profile is cheap to build again.
+     */
+    public static final int IDENTITY_CACHE_SIZE = Math.max(1, Integer.getInteger("pipeline.contributors.cacheSize", 1000));
 
     private String jiraBaseUrl;
+    // username to profile, so that every Contributor of a user shares one profile
+    // instead of building its urls again. In access order, so that the least recently
+    // used profile is evicted first. Guarded by itself.
+    private final Map<String, ContributorIdentity> identities;
 
     public ContributorBuilder(JiraApplinksService jiraApplinksService) {
+        this.identities = new LinkedHashMap<String, ContributorIdentity>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ContributorIdentity> eldest) {
+                return size() > IDENTITY_CACHE_SIZE;
+            }
+        };
         this.jiraBaseUrl = null;
         try {
             if (jiraApplinksService != null && jiraApplinksService.hasJiraApplicationLink()) {
@@ -46,12 +66,49 @@ public class ContributorBuilder {
      * otherwise, those fields will be null.
      */
     public Contributor createContributor(String username, Date lastCommitDate, String fullName) {
+        return new Contributor(getIdentity(username, fullName), 1, lastCommitDate);
+    }
+
+    /**
+     * Get the profile of the contributor with the given username. The profile of a
+     * user is built once and shared until it is evicted, or until a different full
+     * name is given for the user, in which case it is built again with that name.
+     *
+     * @param username of the contributor
+     * @param fullName of the contributor from Bamboo, null if unknown
+     * @return the profile of the contributor. If there are application link to Jira,
+     * the picture url and profile page url point to Jira, otherwise the picture url
+     * is a placeholder and the profile page url is null.
+     */
+    public ContributorIdentity getIdentity(String username, String fullName) {
+        synchronized (identities) {
+            ContributorIdentity identity = identities.get(username);
+            if (identity != null && (fullName == null || fullName.equals(identity.getFullname()))) {
+                return identity;
+            }
+
+            String profilePageUrl = jiraBaseUrl != null ? jiraBaseUrl + JIRA_PROFILE_PATH + username : null;
+            identity = new ContributorIdentity(username, fullName, buildPictureUrl(username), profilePageUrl);
+            identities.put(username, identity);
+            return identity;
+        }
+    }
+
+    /*
+     * Return the number of profiles kept, for tests.
+     */
+    int getIdentityCount() {
+        synchronized (identities) {
+            return identities.size();
+        }
+    }
+
+    // Build the picture url of the contributor with the given username.
+    private String buildPictureUrl(String username) {
         if (jiraBaseUrl != null) {
-            String pictureUrl = jiraBaseUrl + JIRA_USER_AVATAR_PATH + username;
-            String profilePageUrl = jiraBaseUrl + JIRA_PROFILE_PATH + username;
-            return new Contributor(username, lastCommitDate, fullName, pictureUrl, profilePageUrl);
+            return jiraBaseUrl + JIRA_USER_AVATAR_PATH + username;
         } else {
-            return new Contributor(username, lastCommitDate, fullName, "http://lorempixel.com/32/32/cats/", null);
+            return DEFAULT_PICTURE_URL;
         }
     }
 }
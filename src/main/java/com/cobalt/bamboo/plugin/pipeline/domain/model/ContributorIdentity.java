@@ -0,0 +1,67 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+/**
+ * The profile of a contributor: username, full name, picture url and profile page url.
+ * Immutable, so that one instance per user can be shared by all the Contributors of
+ * that user, while their commit counts are kept by each Contributor.
+ */
+public class ContributorIdentity {
+	private final String username;
+	private final String fullname;
+	private final String pictureUrl;
+	private final String profilePageUrl;
+
+	/**
+	 * Constructs a ContributorIdentity object.
+	 *
+	 * @param username Contributor's username on Bamboo
+	 * @param fullname Contributor's full name on Jira,
+	 *                 null if username not found on Jira
+	 * @param pictureUrl Contributor's pictureUrl from Jira,
+	 *                   null if username not found on Jira
+	 * @param profilePageUrl Contributor's profilePageUrl from Jira,
+	 *                       null if username not found on Jira
+	 */
+	public ContributorIdentity(String username, String fullname, String pictureUrl, String profilePageUrl) {
+		this.username = username;
+		this.fullname = fullname;
+		this.pictureUrl = pictureUrl;
+		this.profilePageUrl = profilePageUrl;
+	}
+
+	/**
+	 * Gets the username of this contributor.
+	 *
+	 * @return the username
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Gets the contributor's full name.
+	 *
+	 * @return the user's first and last name.
+	 */
+	public String getFullname() {
+		return fullname;
+	}
+
+	/**
+	 * Gets a link to the user's profile picture on Jira.
+	 *
+	 * @return the url of the user's profile picture from Jira.
+	 */
+	public String getPictureUrl() {
+		return pictureUrl;
+	}
+
+	/**
+	 * Gets a link to the user's profile page on Jira.
+	 *
+	 * @return the url of the user's profile page on Jira.
+	 */
+	public String getProfilePageUrl() {
+		return profilePageUrl;
+	}
+}
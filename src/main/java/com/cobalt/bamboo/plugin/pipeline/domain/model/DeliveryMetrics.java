@@ -0,0 +1,99 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+/**
+ * The delivery metrics of a plan over its most recent deployments: deployment
+ * frequency, lead time from commit to deployment, change failure rate and mean time
+ * to restore.
+ */
+public class DeliveryMetrics {
+	public static final long DAY = 24 * 60 * 60 * 1000L;
+	public static final int FREQUENCY_DAYS = 30;
+	private static final double HOUR = 60 * 60 * 1000.0;
+
+	private final int numDeployments;
+	private final int deploymentsInWindow;
+	private final long windowLength;
+	private final long averageLeadTime;
+	private final double changeFailureRate;
+	private final long meanTimeToRestore;
+
+	/**
+	 * Construct a DeliveryMetrics with the given information.
+	 * @param numDeployments number of deployments the metrics are computed from
+	 * @param deploymentsInWindow number of deployments within the frequency window
+	 * @param windowLength length of the frequency window, in milliseconds
+	 * @param averageLeadTime average time from commit to deployment, in milliseconds,
+	 *        -1 if no deployed commit
+	 * @param changeFailureRate ratio of deployments followed by a failed build, -1 if
+	 *        no deployment has an outcome yet
+	 * @param meanTimeToRestore average time from a failed build to the next successful
+	 *        build, in milliseconds, -1 if the plan never recovered from a failure
+	 */
+	public DeliveryMetrics(int numDeployments, int deploymentsInWindow, long windowLength, long averageLeadTime,
+			double changeFailureRate, long meanTimeToRestore) {
+		this.numDeployments = numDeployments;
+		this.deploymentsInWindow = deploymentsInWindow;
+		this.windowLength = windowLength;
+		this.averageLeadTime = averageLeadTime;
+		this.changeFailureRate = changeFailureRate;
+		this.meanTimeToRestore = meanTimeToRestore;
+	}
+
+	/**
+	 * Return the number of deployments the metrics are computed from
+	 * @return number of recent deployments
+	 */
+	public int getNumDeployments() {
+		return numDeployments;
+	}
+
+	/**
+	 * Return the number of deployments per day over the last 30 days, rounded to 2
+	 * decimal places
+	 * @return deployment frequency in deployments per day
+	 */
+	public double getDeploymentsPerDay() {
+		if (windowLength <= 0) {
+			return 0;
+		}
+		return round(deploymentsInWindow * 1.0 * DAY / windowLength);
+	}
+
+	/**
+	 * Return the average time from a commit to the deployment that shipped it, in
+	 * hours, rounded to 2 decimal places
+	 * If there's no deployed commit, return -1
+	 * @return average lead time in hours
+	 */
+	public double getLeadTimeHours() {
+		return toHours(averageLeadTime);
+	}
+
+	/**
+	 * Return the ratio of deployments followed by a failed build, rounded to 2 decimal
+	 * places
+	 * If no deployment has been followed by a completed build yet, return -1
+	 * @return change failure rate
+	 */
+	public double getChangeFailureRate() {
+		return changeFailureRate < 0 ? -1 : round(changeFailureRate);
+	}
+
+	/**
+	 * Return the average time from a failed build to the next successful build, in
+	 * hours, rounded to 2 decimal places
+	 * If the plan never recovered from a failure, return -1
+	 * @return mean time to restore in hours
+	 */
+	public double getTimeToRestoreHours() {
+		return toHours(meanTimeToRestore);
+	}
+
+	private static double toHours(long millis) {
+		return millis < 0 ? -1 : round(millis / HOUR);
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 100.0) / 100.0;
+	}
+}
@@ -0,0 +1,25 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+public class DeliveryMetricsFactory {
+	// number of the most recent deployments, and failures, the metrics are computed over
+	static final int MAX_DEPLOYMENTS = 128;
+
+	/**
+	 * Return the DeliveryMetrics of a plan, as of the given time, out of the index of
+	 * its most recent completed builds. The index holds what every metric needs,
+	 * including the dates of the commits of each build for the lead time, and is kept
+	 * up to date as builds complete, including the builds that are completed again
+	 * once their manual stage is run. So the metrics never need the history of the
+	 * plan on their own, and cover at most the builds the index holds.
+	 * @param index of the most recent completed builds of the plan
+	 * @param now time at which the metrics are computed
+	 * @return the delivery metrics of the plan
+	 */
+	public static DeliveryMetrics createDeliveryMetrics(BuildHistoryIndex index, long now) {
+		long windowLength = DeliveryMetrics.FREQUENCY_DAYS * DeliveryMetrics.DAY;
+		return new DeliveryMetrics(Math.min(index.countDeployments(), MAX_DEPLOYMENTS),
+				index.countDeploymentsBetween(now - windowLength, now), windowLength,
+				index.getAverageLeadTime(MAX_DEPLOYMENTS), index.getChangeFailureRate(MAX_DEPLOYMENTS),
+				index.getMeanTimeToRestore(MAX_DEPLOYMENTS));
+	}
+}
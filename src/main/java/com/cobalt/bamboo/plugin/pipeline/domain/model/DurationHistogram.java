@@ -0,0 +1,194 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Histogram of durations, in seconds, over a fixed set of log-linear buckets: each
+ * power of two is split into 8 buckets of the same width, so that every duration is
+ * kept within 12.5% of its value, from one second up to about 12 days. Durations
+ * under 8 seconds are kept exactly, longer ones are capped.
+ *
+ * The buckets are the same for every histogram, so histograms of several plans or
+ * stages are merged by adding up their counts, and a percentile is found by walking
+ * the fixed number of buckets, whatever the number of durations recorded.
+ *
+ * This class is thread safe.
+ */
+public class DurationHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 20;
+	static final long MAX_SECONDS = (1L << MAX_EXPONENT) - 1;
+	static final int NUM_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final int[] counts;
+	private long totalCount;
+
+	/**
+	 * Construct an empty DurationHistogram.
+	 */
+	public DurationHistogram() {
+		this.counts = new int[NUM_BUCKETS];
+	}
+
+	/**
+	 * Record the given duration. Negative durations are ignored.
+	 * @param durationMillis duration to record, in milliseconds
+	 */
+	public synchronized void record(long durationMillis) {
+		if (durationMillis < 0) {
+			return;
+		}
+		long seconds = Math.min((durationMillis + 999) / 1000, MAX_SECONDS);
+		counts[bucketOf(seconds)]++;
+		totalCount++;
+	}
+
+	/**
+	 * Remove a duration previously recorded, e.g. the one a build was recorded with
+	 * before it completed again. Negative durations are ignored.
+	 * @param durationMillis duration to remove, in milliseconds
+	 */
+	public synchronized void remove(long durationMillis) {
+		if (durationMillis < 0) {
+			return;
+		}
+		int bucket = bucketOf(Math.min((durationMillis + 999) / 1000, MAX_SECONDS));
+		if (counts[bucket] > 0) {
+			counts[bucket]--;
+			totalCount--;
+		}
+	}
+
+	/**
+	 * Add all the durations recorded by the given histogram to this histogram.
+	 * @param other histogram to merge into this one
+	 */
+	public void merge(DurationHistogram other) {
+		int[] otherCounts;
+		synchronized (other) {
+			otherCounts = other.counts.clone();
+		}
+		synchronized (this) {
+			for (int i = 0; i < NUM_BUCKETS; i++) {
+				counts[i] += otherCounts[i];
+				totalCount += otherCounts[i];
+			}
+		}
+	}
+
+	/**
+	 * Return the number of durations recorded
+	 * @return number of durations recorded
+	 */
+	public synchronized long getCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Return the duration, in seconds, that the given percentage of the recorded
+	 * durations doesn't exceed, rounded up to the end of its bucket.
+	 * If no duration was recorded, return -1
+	 * @param percentile between 0 and 100
+	 * @return the duration at the given percentile, in seconds
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (totalCount == 0) {
+			return -1;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * totalCount));
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return highestValueOf(i);
+			}
+		}
+		return MAX_SECONDS;
+	}
+
+	/**
+	 * @return the median duration, in seconds, -1 if no duration was recorded
+	 */
+	public long getP50() {
+		return getPercentile(50);
+	}
+
+	/**
+	 * @return the 95th percentile of the durations, in seconds, -1 if no duration was recorded
+	 */
+	public long getP95() {
+		return getPercentile(95);
+	}
+
+	/**
+	 * @return the 99th percentile of the durations, in seconds, -1 if no duration was recorded
+	 */
+	public long getP99() {
+		return getPercentile(99);
+	}
+
+	/**
+	 * Write the non-empty buckets of this histogram into the given snapshot output.
+	 * @param out to write to
+	 * @throws IOException if the output can't be written
+	 */
+	public synchronized void writeTo(DataOutput out) throws IOException {
+		int numUsed = 0;
+		for (int count : counts) {
+			if (count > 0) {
+				numUsed++;
+			}
+		}
+		out.writeShort(numUsed);
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			if (counts[i] > 0) {
+				out.writeShort(i);
+				out.writeInt(counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Read a histogram previously written by {@link #writeTo(DataOutput)}.
+	 * @param in to read from
+	 * @return the restored histogram
+	 * @throws IOException if the input can't be read or is corrupted
+	 */
+	public static DurationHistogram readFrom(DataInput in) throws IOException {
+		DurationHistogram histogram = new DurationHistogram();
+		int numUsed = in.readShort();
+		for (int i = 0; i < numUsed; i++) {
+			int bucket = in.readShort();
+			int count = in.readInt();
+			if (bucket < 0 || bucket >= NUM_BUCKETS || count < 0) {
+				throw new IOException("Invalid histogram bucket " + bucket);
+			}
+			histogram.counts[bucket] = count;
+			histogram.totalCount += count;
+		}
+		return histogram;
+	}
+
+	// Return the bucket of the given number of seconds: the top four bits of the value
+	// pick the bucket within the range of its highest bit.
+	static int bucketOf(long seconds) {
+		if (seconds < SUB_BUCKETS) {
+			return (int) seconds;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(seconds) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (seconds >> shift) - SUB_BUCKETS;
+	}
+
+	// Return the highest number of seconds that falls into the given bucket.
+	static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,263 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.commit.Commit;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Keeps the running counters of a PerformanceSummary, so that the summary can be
+ * built once from the build history of a plan and then kept up to date by adding each
+ * newly completed build, without going through the history again.
+ * 
+ * Builds must be added from the oldest to the newest. The changes of builds after the
+ * most recent completion are kept aside until the next completion, which they belong to.
+ * The history can also be loaded from the newest build to the oldest, as a
+ * BuildHistoryAggregator, before any newer build is added.
+ *
+ * A build that is still running or waiting at a manual stage can still change, e.g.
+ * become a completion once its manual stage is run. So the most recent builds, from
+ * the oldest one that can still change, aren't added for good: they are applied again
+ * on top of the other builds every time the latest builds are given.
+ * This class is thread safe.
+ */
+public class PerformanceAccumulator implements BuildHistoryAggregator {
+	// number of the most recent builds that are applied again while they can still
+	// change, older builds are added for good whatever their state
+	static final int UNSETTLED_BUILDS = 12;
+	
+	private final ContributorBuilder contributorBuilder;
+	// builds from this one on are left out of the history, as they are applied again
+	private final int firstUnsettledBuildNumber;
+	private boolean empty;
+	private int lastBuildNumber;
+	private int totalBuild;
+	private int totalSuccess;
+	private int totalChanges;
+	private Date startDate;
+	private Date lastCompletionDate;
+	// most recent completion first
+	private LinkedList<CompletionStats> completions;
+	// changes of the builds after the most recent completion
+	private CompletionStats pending;
+	// oldest completion loaded so far, when loading from the newest build
+	private CompletionStats oldestCompletion;
+	// the builds added for good with the most recent builds that can still change
+	// applied on top, null if there is none
+	private PerformanceAccumulator recent;
+	
+	/**
+	 * Construct an empty PerformanceAccumulator.
+	 * @param contributorBuilder a contributor builder used to create contributors
+	 */
+	public PerformanceAccumulator(ContributorBuilder contributorBuilder) {
+		this(contributorBuilder, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Construct an empty PerformanceAccumulator whose history leaves out the builds
+	 * from the given one on, so that they are applied by
+	 * {@link #addLatestBuilds(List)} instead.
+	 * @param contributorBuilder a contributor builder used to create contributors
+	 * @param firstUnsettledBuildNumber number of the oldest build that can still
+	 *        change, as returned by {@link #getFirstUnsettledBuildNumber(List)}
+	 */
+	public PerformanceAccumulator(ContributorBuilder contributorBuilder, int firstUnsettledBuildNumber) {
+		this.contributorBuilder = contributorBuilder;
+		this.firstUnsettledBuildNumber = firstUnsettledBuildNumber;
+		this.empty = true;
+		this.lastBuildNumber = -1;
+		this.completions = new LinkedList<CompletionStats>();
+		this.pending = createPending();
+	}
+	
+	/**
+	 * Add the given build, which must be newer than all the builds already added.
+	 * Builds that aren't completed count towards the changes, but not towards the
+	 * success percentage.
+	 * @param build the build to add
+	 */
+	public synchronized void addBuild(ChainResultsSummary build) {
+		Date completedDate = build.getBuildCompletedDate();
+		if (empty) {
+			startDate = completedDate;
+			empty = false;
+		}
+		lastBuildNumber = build.getBuildNumber();
+		
+		if (completedDate != null) {
+			totalBuild++;
+			if (build.isSuccessful()) {
+				totalSuccess++;
+			}
+		}
+		
+		List<Commit> commits = build.getCommits();
+		if (completedDate != null && !build.isContinuable() && build.isSuccessful()) {
+			// a completion takes all the changes since the previous completion
+			CompletionStats completion = new CompletionStats(build.getBuildNumber(), completedDate);
+			completion.addNumChanges(commits.size());
+			PerformanceSummaryCreator.addAllAuthorsInCommits(completion, commits, contributorBuilder);
+			completion.addAll(pending);
+			
+			totalChanges += completion.getNumChanges();
+			lastCompletionDate = completedDate;
+			completions.addFirst(completion);
+			pending = createPending();
+		} else {
+			pending.addNumChanges(commits.size());
+			PerformanceSummaryCreator.addAllAuthorsInCommits(pending, commits, contributorBuilder);
+		}
+	}
+	
+	/**
+	 * Add the given build, which must be older than all the builds already added.
+	 * Builds still running before the first completed one are left out, so that they
+	 * are added by {@link #addBuild(ChainResultsSummary)} once they complete.
+	 * @param result the build to add
+	 * @return true, the whole history is needed
+	 */
+	@Override
+	public synchronized boolean addOlderBuild(ResultsSummary result) {
+		if (result.getBuildNumber() >= firstUnsettledBuildNumber) {
+			return true;
+		}
+		ChainResultsSummary build = (ChainResultsSummary) result;
+		Date completedDate = build.getBuildCompletedDate();
+		if (empty) {
+			if (completedDate == null) {
+				return true;
+			}
+			lastBuildNumber = build.getBuildNumber();
+			empty = false;
+		}
+		startDate = completedDate;
+		
+		if (completedDate != null) {
+			totalBuild++;
+			if (build.isSuccessful()) {
+				totalSuccess++;
+			}
+		}
+		
+		// a completion takes all the changes back to the previous completion, and
+		// changes newer than the most recent completion are kept aside
+		CompletionStats owner;
+		if (completedDate != null && !build.isContinuable() && build.isSuccessful()) {
+			owner = new CompletionStats(build.getBuildNumber(), completedDate);
+			if (lastCompletionDate == null) {
+				lastCompletionDate = completedDate;
+			}
+			completions.addLast(owner);
+			oldestCompletion = owner;
+		} else {
+			owner = oldestCompletion != null ? oldestCompletion : pending;
+		}
+		
+		List<Commit> commits = build.getCommits();
+		owner.addNumChanges(commits.size());
+		PerformanceSummaryCreator.addAllAuthorsInCommits(owner, commits, contributorBuilder);
+		if (owner != pending) {
+			totalChanges += commits.size();
+		}
+		return true;
+	}
+	
+	/**
+	 * Add the given most recent builds of the plan, newest first, that are newer than
+	 * the last build added for good. Builds up to the oldest one that can still change
+	 * are added for good, the others are applied on top of them until the next call.
+	 * @param latestBuilds most recent builds of the plan, newest first
+	 */
+	public synchronized void addLatestBuilds(List<ResultsSummary> latestBuilds) {
+		LinkedList<ChainResultsSummary> newBuilds = new LinkedList<ChainResultsSummary>();
+		for (ResultsSummary build : latestBuilds) {
+			if (build.getBuildNumber() <= lastBuildNumber) {
+				break;
+			}
+			newBuilds.addFirst((ChainResultsSummary) build);
+		}
+		
+		// builds too old to be kept apart are added for good whatever their state
+		int numForGood = newBuilds.size() - UNSETTLED_BUILDS;
+		recent = null;
+		int i = 0;
+		for (ChainResultsSummary build : newBuilds) {
+			if (recent == null && i >= numForGood && !isSettled(build)) {
+				recent = copy();
+			}
+			if (recent != null) {
+				recent.addBuild(build);
+			} else {
+				addBuild(build);
+			}
+			i++;
+		}
+	}
+	
+	/**
+	 * Return the build number of the most recent build added for good.
+	 * @return build number of the most recent build added for good, -1 if no build was added
+	 */
+	public synchronized int getLastBuildNumber() {
+		return lastBuildNumber;
+	}
+	
+	/**
+	 * Return the PerformanceSummary of all the builds added so far.
+	 * @return the performance statistics of the added builds
+	 */
+	public synchronized PerformanceSummary getSummary() {
+		if (recent != null) {
+			return recent.getSummary();
+		}
+		return new PerformanceSummary(totalBuild, totalSuccess, totalChanges, startDate, lastCompletionDate, completions);
+	}
+	
+	/**
+	 * Return the number of the oldest of the most recent builds that can still
+	 * change, i.e. that are still running or waiting at a manual stage.
+	 * @param latestBuilds most recent builds of the plan, newest first
+	 * @return number of the oldest build that can still change,
+	 *         Integer.MAX_VALUE if there is none
+	 */
+	public static int getFirstUnsettledBuildNumber(List<ResultsSummary> latestBuilds) {
+		int firstUnsettled = Integer.MAX_VALUE;
+		for (int i = 0; i < latestBuilds.size() && i < UNSETTLED_BUILDS; i++) {
+			ChainResultsSummary build = (ChainResultsSummary) latestBuilds.get(i);
+			if (!isSettled(build)) {
+				firstUnsettled = build.getBuildNumber();
+			}
+		}
+		return firstUnsettled;
+	}
+	
+	// Return true if the given build can't change anymore.
+	private static boolean isSettled(ChainResultsSummary build) {
+		return build.getBuildCompletedDate() != null && !build.isContinuable();
+	}
+	
+	// Return a copy of the builds added for good, to apply the builds that can still
+	// change on. Past completions are left as they are, so they are shared.
+	private PerformanceAccumulator copy() {
+		PerformanceAccumulator copy = new PerformanceAccumulator(contributorBuilder);
+		copy.empty = empty;
+		copy.lastBuildNumber = lastBuildNumber;
+		copy.totalBuild = totalBuild;
+		copy.totalSuccess = totalSuccess;
+		copy.totalChanges = totalChanges;
+		copy.startDate = startDate;
+		copy.lastCompletionDate = lastCompletionDate;
+		copy.completions = new LinkedList<CompletionStats>(completions);
+		copy.pending.addAll(pending);
+		return copy;
+	}
+	
+	// Return an empty holder for changes that aren't part of a completion yet.
+	private static CompletionStats createPending() {
+		return new CompletionStats(-1, new Date(0));
+	}
+}
@@ -3,22 +3,112 @@ package com.cobalt.bamboo.plugin.pipeline.domain.model;
 import com.atlassian.bamboo.builder.BuildState;
 import com.atlassian.bamboo.builder.LifeCycleState;
 import com.atlassian.bamboo.chains.ChainStageResult;
+import com.atlassian.bamboo.resultsummary.BuildResultsSummary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Represents a single stage in the pipeline.
+ * An immutable snapshot: the values are copied out of the stage result on construction.
  */
 public class PipelineStage {
 	
-	private ChainStageResult stageResult;
+	private final String stageName;
+	private final LifeCycleState lifeCycleState;
+	private final BuildState buildState;
+	private final boolean manual;
+	private final long duration;
+	// plan keys of the jobs of this stage, and the state of each finished job (null
+	// while the job hasn't finished), so that job events can patch the stage
+	private final String[] jobKeys;
+	private final BuildState[] jobStates;
 	
 	/**
 	 * Constructs a PipelineStage object.
 	 * 
-	 * @param stageName name of this pipeline stage
-	 * @param buildState state of this pipeline stage in the build
+	 * @param stageResult from Bamboo to construct off of
 	 */
 	public PipelineStage(ChainStageResult stageResult) {
-		this.stageResult = stageResult;
+		this.stageName = stageResult.getName();
+		this.lifeCycleState = stageResult.getLifeCycleState();
+		this.buildState = stageResult.getState();
+		this.manual = stageResult.isManual();
+		this.duration = stageResult.getProcessingDuration();
+		
+		Set<BuildResultsSummary> jobResults = stageResult.getBuildResults();
+		List<String> keys = new ArrayList<String>();
+		List<BuildState> states = new ArrayList<BuildState>();
+		if (jobResults != null) {
+			for (BuildResultsSummary jobResult : jobResults) {
+				if (jobResult.getPlanKey() != null) {
+					keys.add(jobResult.getPlanKey().getKey());
+					states.add(jobResult.getLifeCycleState() == LifeCycleState.FINISHED ? jobResult.getBuildState() : null);
+				}
+			}
+		}
+		this.jobKeys = keys.toArray(new String[keys.size()]);
+		this.jobStates = states.toArray(new BuildState[states.size()]);
+	}
+	
+	/*
+	 * Constructs a PipelineStage from its values, e.g. restored from a snapshot.
+	 */
+	private PipelineStage(String stageName, LifeCycleState lifeCycleState, BuildState buildState, boolean manual,
+							long duration, String[] jobKeys, BuildState[] jobStates) {
+		this.stageName = stageName;
+		this.lifeCycleState = lifeCycleState;
+		this.buildState = buildState;
+		this.manual = manual;
+		this.duration = duration;
+		this.jobKeys = jobKeys;
+		this.jobStates = jobStates;
+	}
+	
+	/**
+	 * Write the current values of this pipeline stage into the given snapshot output.
+	 * 
+	 * @param out to write to
+	 * @throws IOException if the output can't be written
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		SnapshotFormat.writeString(out, getStageName());
+		SnapshotFormat.writeEnum(out, getLifeCycleState());
+		SnapshotFormat.writeEnum(out, getBuildState());
+		out.writeBoolean(isManual());
+		out.writeLong(duration);
+		out.writeInt(jobKeys.length);
+		for (int i = 0; i < jobKeys.length; i++) {
+			SnapshotFormat.writeString(out, jobKeys[i]);
+			SnapshotFormat.writeEnum(out, jobStates[i]);
+		}
+	}
+	
+	/**
+	 * Read a pipeline stage previously written by {@link #writeTo(DataOutput)}.
+	 * 
+	 * @param in to read from
+	 * @return the restored pipeline stage
+	 * @throws IOException if the input can't be read or is corrupted
+	 */
+	public static PipelineStage readFrom(DataInput in) throws IOException {
+		String stageName = SnapshotFormat.readString(in);
+		LifeCycleState lifeCycleState = SnapshotFormat.readEnum(in, LifeCycleState.class);
+		BuildState buildState = SnapshotFormat.readEnum(in, BuildState.class);
+		boolean manual = in.readBoolean();
+		long duration = in.readLong();
+		int numJobs = in.readInt();
+		String[] jobKeys = new String[numJobs];
+		BuildState[] jobStates = new BuildState[numJobs];
+		for (int i = 0; i < numJobs; i++) {
+			jobKeys[i] = SnapshotFormat.readString(in);
+			jobStates[i] = SnapshotFormat.readEnum(in, BuildState.class);
+		}
+		return new PipelineStage(stageName, lifeCycleState, buildState, manual, duration, jobKeys, jobStates);
 	}
 	
 	/**
@@ -27,7 +117,7 @@ public class PipelineStage {
 	 * @return the stageName
 	 */
 	public String getStageName() {
-		return stageResult.getName();
+		return stageName;
 	}
 	
 	/**
@@ -39,7 +129,7 @@ public class PipelineStage {
 	 *         NOT_BUILT, PENDING, or QUEUED.
 	 */
 	public LifeCycleState getLifeCycleState() {
-		return stageResult.getLifeCycleState();
+		return lifeCycleState;
 	}
 	
 	/**
@@ -50,7 +140,7 @@ public class PipelineStage {
 	 * @return the build state, which can be FAILED, UNKNOWN, or SUCCESSFUL.
 	 */
 	public BuildState getBuildState() {
-		return stageResult.getState();
+		return buildState;
 	}
 	
 	
@@ -61,7 +151,7 @@ public class PipelineStage {
 	 *         false otherwise.
 	 */
 	public boolean isManual() {
-		return stageResult.isManual();
+		return manual;
 	}
 	
 	/**
@@ -87,4 +177,84 @@ public class PipelineStage {
             }
         }
 	}
+	
+	/**
+	 * Gets the processing duration of this pipeline stage, in milliseconds, as of
+	 * when the stage result was read.
+	 * Access modifier left out intentionally so it isn't serialized.
+	 * 
+	 * @return the duration of this stage
+	 */
+	long getDuration() {
+		return duration;
+	}
+	
+	/**
+	 * Check whether the job with the given plan key belongs to this pipeline stage.
+	 * Access modifier left out intentionally so it isn't serialized.
+	 * 
+	 * @param jobKey plan key of the job, e.g. PROJECT-PLAN-JOB
+	 * @return true if the job belongs to this stage, false otherwise
+	 */
+	boolean containsJob(String jobKey) {
+		return indexOfJob(jobKey) >= 0;
+	}
+	
+	/**
+	 * Return a copy of this pipeline stage, patched for the given job being queued:
+	 * the stage has started and the job hasn't finished.
+	 * Access modifier left out intentionally for package protection.
+	 * 
+	 * @param jobKey plan key of the job, which must belong to this stage
+	 * @return the patched pipeline stage
+	 */
+	PipelineStage withJobQueued(String jobKey) {
+		BuildState[] states = jobStates.clone();
+		states[indexOfJob(jobKey)] = null;
+		return new PipelineStage(stageName, LifeCycleState.IN_PROGRESS, BuildState.UNKNOWN, manual, duration, jobKeys,
+				states);
+	}
+	
+	/**
+	 * Return a copy of this pipeline stage, patched for the given job having finished
+	 * with the given state. The stage is finished once all of its jobs are, and is only
+	 * successful if all of them are: a job that failed, was stopped or finished in an
+	 * unknown state fails the stage.
+	 * Access modifier left out intentionally for package protection.
+	 * 
+	 * @param jobKey plan key of the job, which must belong to this stage
+	 * @param jobState the build state the job finished with
+	 * @return the patched pipeline stage
+	 */
+	PipelineStage withJobCompleted(String jobKey, BuildState jobState) {
+		BuildState[] states = jobStates.clone();
+		states[indexOfJob(jobKey)] = jobState;
+		
+		boolean finished = true;
+		boolean failed = false;
+		for (BuildState state : states) {
+			if (state == null) {
+				finished = false;
+			} else if (state != BuildState.SUCCESS) {
+				failed = true;
+			}
+		}
+		
+		if (finished) {
+			return new PipelineStage(stageName, LifeCycleState.FINISHED, failed ? BuildState.FAILED : BuildState.SUCCESS,
+					manual, duration, jobKeys, states);
+		}
+		return new PipelineStage(stageName, LifeCycleState.IN_PROGRESS, BuildState.UNKNOWN, manual, duration, jobKeys,
+				states);
+	}
+	
+	// Return the index of the job with the given plan key, -1 if not in this stage.
+	private int indexOfJob(String jobKey) {
+		for (int i = 0; i < jobKeys.length; i++) {
+			if (jobKeys[i].equals(jobKey)) {
+				return i;
+			}
+		}
+		return -1;
+	}
 }
@@ -0,0 +1,74 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The list of changes since the last pipeline completion of a plan, kept up to date
+ * as new builds come in. The changes of each build are only constructed once, when the
+ * build is first seen, and dropped once a newer completion cuts them off the list.
+ * This class is thread safe.
+ */
+public class PlanChangeList {
+	private final ContributorBuilder contributorBuilder;
+	// changes of each build in the list, by build number
+	private Map<Integer, List<Change>> changesByBuild;
+	private volatile List<Change> changeList;
+	
+	/**
+	 * Construct an empty PlanChangeList.
+	 * 
+	 * @param contributorBuilder The contributor builder to construct picture url for 
+	 *                           the authors
+	 */
+	public PlanChangeList(ContributorBuilder contributorBuilder) {
+		this.contributorBuilder = contributorBuilder;
+		this.changesByBuild = new HashMap<Integer, List<Change>>();
+		this.changeList = Collections.emptyList();
+	}
+	
+	/**
+	 * Update the list of changes with the most recent builds of the plan, newest first.
+	 * The builds must go back to the last pipeline completion before the newest build,
+	 * or to the first build of the plan. Older builds are ignored.
+	 * 
+	 * @param recentBuilds the most recent builds of the plan, newest first
+	 */
+	public synchronized void update(List<ResultsSummary> recentBuilds) {
+		Map<Integer, List<Change>> newChangesByBuild = new HashMap<Integer, List<Change>>();
+		List<Change> newChangeList = new ArrayList<Change>();
+		
+		for (int i = 0; i < recentBuilds.size(); i++) {
+			ResultsSummary build = recentBuilds.get(i);
+			if (i > 0 && ChangeListFactory.isCompletion(build)) {
+				break;
+			}
+			
+			List<Change> buildChanges = changesByBuild.get(build.getBuildNumber());
+			if (buildChanges == null) {
+				buildChanges = new ArrayList<Change>();
+				ChangeListFactory.addChangesToList(buildChanges, build.getCommits(), 
+								build.getBuildNumber(), contributorBuilder);
+			}
+			newChangesByBuild.put(build.getBuildNumber(), buildChanges);
+			newChangeList.addAll(buildChanges);
+		}
+		
+		changesByBuild = newChangesByBuild;
+		changeList = Collections.unmodifiableList(newChangeList);
+	}
+	
+	/**
+	 * Get the list of changes since the last pipeline completion.
+	 * 
+	 * @return the unmodifiable list of changes, may be empty.
+	 */
+	public List<Change> getChanges() {
+		return changeList;
+	}
+}
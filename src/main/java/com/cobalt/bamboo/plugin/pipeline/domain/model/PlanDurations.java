@@ -0,0 +1,246 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.chains.ChainStageResult;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DurationHistograms of the completed builds of a plan, and of its stages by stage
+ * name. Durations of several plans can be merged, e.g. for all the plans of a project.
+ *
+ * The histograms are loaded from the history of the plan, newest build first, as a
+ * BuildHistoryAggregator. The durations of the builds only need the builds themselves,
+ * so they cover the whole history, but the stages are only read for the most recent
+ * builds. After that, each newly completed build is recorded from the ProjectReport
+ * of the plan.
+ *
+ * The last build recorded can still complete again, e.g. once its manual stage is run
+ * or it is rerun. Its durations are kept, so that they are replaced by its final
+ * durations when it completes again.
+ *
+ * This class is thread safe.
+ */
+public class PlanDurations implements BuildHistoryAggregator {
+	// number of the most recent builds whose stages are read from the history
+	static final int STAGE_HISTORY_SIZE = 25;
+	// completed time of the last build recorded when there is none
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	private final DurationHistogram builds;
+	// stage name to histogram, in the order the stages were first seen
+	private final Map<String, DurationHistogram> stages;
+	private int lastBuildNumber;
+	private int stageBuildsLoaded;
+	// the last build recorded: its completed time, and the durations it was recorded
+	// with, to take back if it completes again
+	private long lastCompletedTime;
+	private long lastDuration;
+	private final Map<String, Long> lastStageDurations;
+
+	/**
+	 * Construct an empty PlanDurations.
+	 */
+	public PlanDurations() {
+		this.builds = new DurationHistogram();
+		this.stages = new LinkedHashMap<String, DurationHistogram>();
+		this.lastBuildNumber = -1;
+		this.lastCompletedTime = NO_DATE;
+		this.lastStageDurations = new LinkedHashMap<String, Long>();
+	}
+
+	/**
+	 * Add the given build, which must be older than all the builds already added.
+	 * Builds that aren't completed are left out, so that they are recorded by
+	 * {@link #record(ProjectReport)} once they complete.
+	 * @param result the build to add
+	 * @return true, the whole history is needed
+	 */
+	@Override
+	public synchronized boolean addOlderBuild(ResultsSummary result) {
+		if (result.getBuildCompletedDate() == null) {
+			return true;
+		}
+		// the newest completed build is the last one recorded
+		boolean last = lastCompletedTime == NO_DATE;
+		if (last) {
+			lastBuildNumber = result.getBuildNumber();
+			lastCompletedTime = result.getBuildCompletedDate().getTime();
+			lastDuration = result.getDuration();
+		}
+		builds.record(result.getDuration());
+
+		if (stageBuildsLoaded < STAGE_HISTORY_SIZE && result instanceof ChainResultsSummary) {
+			stageBuildsLoaded++;
+			List<ChainStageResult> stageResults = ((ChainResultsSummary) result).getStageResults();
+			if (stageResults != null) {
+				for (ChainStageResult stageResult : stageResults) {
+					if (stageResult.getName() != null && stageResult.getProcessingDuration() > 0) {
+						getStage(stageResult.getName()).record(stageResult.getProcessingDuration());
+						if (last) {
+							lastStageDurations.put(stageResult.getName(), stageResult.getProcessingDuration());
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Record the current build of the given ProjectReport and its stages, if the build
+	 * is completed and wasn't recorded yet. The last build recorded is recorded again
+	 * if it completed again since, in place of the durations it was recorded with.
+	 * @param projectReport of the plan
+	 * @return true if the build was recorded, false otherwise
+	 */
+	public synchronized boolean record(ProjectReport projectReport) {
+		Build build = projectReport.getCurrentBuild();
+		Date completedDate = build == null ? null : build.getBuildCompletedDate();
+		if (completedDate == null || build.getBuildNumber() < lastBuildNumber) {
+			return false;
+		}
+		if (build.getBuildNumber() == lastBuildNumber) {
+			if (completedDate.getTime() == lastCompletedTime) {
+				return false;
+			}
+			// e.g. its manual stage was run, so its durations are final only now
+			builds.remove(lastDuration);
+			for (Map.Entry<String, Long> stage : lastStageDurations.entrySet()) {
+				getStage(stage.getKey()).remove(stage.getValue());
+			}
+		}
+
+		lastBuildNumber = build.getBuildNumber();
+		lastCompletedTime = completedDate.getTime();
+		lastDuration = build.getDuration();
+		lastStageDurations.clear();
+		builds.record(build.getDuration());
+		for (PipelineStage stage : projectReport.getPipelineStages()) {
+			if (stage.getStageName() != null && stage.getDuration() > 0) {
+				getStage(stage.getStageName()).record(stage.getDuration());
+				lastStageDurations.put(stage.getStageName(), stage.getDuration());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Add all the durations of the given plan to these durations.
+	 * @param other durations to merge into these
+	 */
+	public void merge(PlanDurations other) {
+		DurationHistogram otherBuilds;
+		Map<String, DurationHistogram> otherStages;
+		synchronized (other) {
+			otherBuilds = other.builds;
+			otherStages = new LinkedHashMap<String, DurationHistogram>(other.stages);
+		}
+		synchronized (this) {
+			builds.merge(otherBuilds);
+			for (Map.Entry<String, DurationHistogram> entry : otherStages.entrySet()) {
+				getStage(entry.getKey()).merge(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Return a copy of these durations, which can be recorded into without changing
+	 * these.
+	 * @return a copy of these durations
+	 */
+	public synchronized PlanDurations copy() {
+		PlanDurations copy = new PlanDurations();
+		copy.builds.merge(builds);
+		for (Map.Entry<String, DurationHistogram> entry : stages.entrySet()) {
+			copy.getStage(entry.getKey()).merge(entry.getValue());
+		}
+		copy.lastBuildNumber = lastBuildNumber;
+		copy.stageBuildsLoaded = stageBuildsLoaded;
+		copy.lastCompletedTime = lastCompletedTime;
+		copy.lastDuration = lastDuration;
+		copy.lastStageDurations.putAll(lastStageDurations);
+		return copy;
+	}
+
+	/**
+	 * Return the histogram of the durations of the builds
+	 * @return the histogram of the build durations
+	 */
+	public DurationHistogram getBuilds() {
+		return builds;
+	}
+
+	/**
+	 * Return the histograms of the durations of the stages, by stage name
+	 * @return the histograms of the stage durations
+	 */
+	public synchronized Map<String, DurationHistogram> getStages() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, DurationHistogram>(stages));
+	}
+
+	/**
+	 * Write these durations into the given snapshot output.
+	 * @param out to write to
+	 * @throws IOException if the output can't be written
+	 */
+	public synchronized void writeTo(DataOutput out) throws IOException {
+		out.writeInt(lastBuildNumber);
+		out.writeLong(lastCompletedTime);
+		out.writeLong(lastDuration);
+		out.writeInt(lastStageDurations.size());
+		for (Map.Entry<String, Long> entry : lastStageDurations.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeLong(entry.getValue());
+		}
+		builds.writeTo(out);
+		out.writeInt(stages.size());
+		for (Map.Entry<String, DurationHistogram> entry : stages.entrySet()) {
+			out.writeUTF(entry.getKey());
+			entry.getValue().writeTo(out);
+		}
+	}
+
+	/**
+	 * Read durations previously written by {@link #writeTo(DataOutput)}.
+	 * @param in to read from
+	 * @return the restored durations
+	 * @throws IOException if the input can't be read or is corrupted
+	 */
+	public static PlanDurations readFrom(DataInput in) throws IOException {
+		PlanDurations durations = new PlanDurations();
+		durations.lastBuildNumber = in.readInt();
+		durations.lastCompletedTime = in.readLong();
+		durations.lastDuration = in.readLong();
+		int numLastStages = in.readInt();
+		for (int i = 0; i < numLastStages; i++) {
+			String stageName = in.readUTF();
+			durations.lastStageDurations.put(stageName, in.readLong());
+		}
+		durations.builds.merge(DurationHistogram.readFrom(in));
+		int numStages = in.readInt();
+		for (int i = 0; i < numStages; i++) {
+			String stageName = in.readUTF();
+			durations.stages.put(stageName, DurationHistogram.readFrom(in));
+		}
+		return durations;
+	}
+
+	// Get the histogram of the stage with the given name, creating it if needed.
+	private DurationHistogram getStage(String stageName) {
+		DurationHistogram histogram = stages.get(stageName);
+		if (histogram == null) {
+			histogram = new DurationHistogram();
+			stages.put(stageName, histogram);
+		}
+		return histogram;
+	}
+}
@@ -0,0 +1,59 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+/**
+ * The ProjectReport, UptimeGrade, UptimeWindows and PlanDurations of a plan, computed together out of a single
+ * pass over its build history.
+ */
+public class PlanStatistics {
+	private final ProjectReport projectReport;
+	private final UptimeGrade uptimeGrade;
+	private final UptimeWindows uptimeWindows;
+	private final PlanDurations durations;
+	
+	/**
+	 * Construct a PlanStatistics.
+	 * @param projectReport of the plan
+	 * @param uptimeGrade of the plan
+	 * @param uptimeWindows of the plan
+	 * @param durations of the plan
+	 */
+	public PlanStatistics(ProjectReport projectReport, UptimeGrade uptimeGrade, UptimeWindows uptimeWindows,
+			PlanDurations durations) {
+		this.projectReport = projectReport;
+		this.uptimeGrade = uptimeGrade;
+		this.uptimeWindows = uptimeWindows;
+		this.durations = durations;
+	}
+	
+	/**
+	 * Get the ProjectReport of the plan.
+	 * @return the ProjectReport of the plan
+	 */
+	public ProjectReport getProjectReport() {
+		return projectReport;
+	}
+	
+	/**
+	 * Get the UptimeGrade of the plan.
+	 * @return the UptimeGrade of the plan
+	 */
+	public UptimeGrade getUptimeGrade() {
+		return uptimeGrade;
+	}
+	
+	/**
+	 * Get the UptimeWindows of the plan.
+	 * @return the UptimeWindows of the plan
+	 */
+	public UptimeWindows getUptimeWindows() {
+		return uptimeWindows;
+	}
+	
+	/**
+	 * Get the PlanDurations of the plan.
+	 * @return the PlanDurations of the plan
+	 */
+	public PlanDurations getDurations() {
+		return durations;
+	}
+}
@@ -1,5 +1,10 @@
 package com.cobalt.bamboo.plugin.pipeline.domain.model;
 
+import com.atlassian.bamboo.builder.BuildState;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -33,6 +38,69 @@ public class ProjectReport {
 		pipelineStages = new ArrayList<PipelineStage>();
 	}
 	
+	/**
+	 * Write this report, including its current build and pipeline stages, into the
+	 * given snapshot output.
+	 * 
+	 * @param out to write to
+	 * @throws IOException if the output can't be written
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		SnapshotFormat.writeString(out, projectName);
+		SnapshotFormat.writeString(out, planName);
+		SnapshotFormat.writeString(out, projectKey);
+		SnapshotFormat.writeString(out, planKey);
+		SnapshotFormat.writeDate(out, lastDeploymentTime);
+		SnapshotFormat.writeDate(out, lastUpdate);
+		out.writeInt(numChanges);
+		
+		out.writeInt(contributors.size());
+		for (Contributor contributor : contributors.values()) {
+			contributor.writeTo(out);
+		}
+		
+		out.writeBoolean(currentBuild != null);
+		if (currentBuild != null) {
+			currentBuild.writeTo(out);
+		}
+		
+		out.writeInt(pipelineStages.size());
+		for (PipelineStage stage : pipelineStages) {
+			stage.writeTo(out);
+		}
+	}
+	
+	/**
+	 * Read a report previously written by {@link #writeTo(DataOutput)}.
+	 * 
+	 * @param in to read from
+	 * @return the restored report
+	 * @throws IOException if the input can't be read or is corrupted
+	 */
+	public static ProjectReport readFrom(DataInput in) throws IOException {
+		ProjectReport report = new ProjectReport(SnapshotFormat.readString(in), SnapshotFormat.readString(in),
+				SnapshotFormat.readString(in), SnapshotFormat.readString(in));
+		report.lastDeploymentTime = SnapshotFormat.readDate(in);
+		report.lastUpdate = SnapshotFormat.readDate(in);
+		report.numChanges = in.readInt();
+		
+		int numContributors = in.readInt();
+		for (int i = 0; i < numContributors; i++) {
+			Contributor contributor = Contributor.readFrom(in);
+			report.contributors.put(contributor.getUsername(), contributor);
+		}
+		
+		if (in.readBoolean()) {
+			report.currentBuild = Build.readFrom(in);
+		}
+		
+		int numStages = in.readInt();
+		for (int i = 0; i < numStages; i++) {
+			report.pipelineStages.add(PipelineStage.readFrom(in));
+		}
+		return report;
+	}
+	
 	/**
 	 * Set lastDeploymentTime to the given date.
 	 * By default, the lastDeploymentTime will be null.
@@ -135,6 +203,51 @@ public class ProjectReport {
 		this.currentBuild = current;
 	}
 	
+	/**
+	 * Return a copy of this report with the stage of the given job patched for the job
+	 * having been queued, which starts the stage, and the last update time moved to the
+	 * given time.
+	 * 
+	 * @param buildNumber of the build the job belongs to
+	 * @param jobKey plan key of the job, e.g. PROJECT-PLAN-JOB
+	 * @param time of the event
+	 * @return the patched report, or null if this report isn't for the given build or
+	 *         none of its stages contains the job, in which case it has to be rebuilt.
+	 */
+	public ProjectReport withJobQueued(int buildNumber, String jobKey, Date time) {
+		int stageIndex = indexOfStage(buildNumber, jobKey);
+		if (stageIndex < 0) {
+			return null;
+		}
+		ProjectReport patched = copy();
+		patched.pipelineStages.set(stageIndex, pipelineStages.get(stageIndex).withJobQueued(jobKey));
+		patched.updateLastUpdateTime(time);
+		return patched;
+	}
+	
+	/**
+	 * Return a copy of this report with the stage of the given job patched for the job
+	 * having finished with the given state, and the last update time moved to the
+	 * given time.
+	 * 
+	 * @param buildNumber of the build the job belongs to
+	 * @param jobKey plan key of the job, e.g. PROJECT-PLAN-JOB
+	 * @param jobState the build state the job finished with
+	 * @param time the job finished at
+	 * @return the patched report, or null if this report isn't for the given build or
+	 *         none of its stages contains the job, in which case it has to be rebuilt.
+	 */
+	public ProjectReport withJobCompleted(int buildNumber, String jobKey, BuildState jobState, Date time) {
+		int stageIndex = indexOfStage(buildNumber, jobKey);
+		if (stageIndex < 0) {
+			return null;
+		}
+		ProjectReport patched = copy();
+		patched.pipelineStages.set(stageIndex, pipelineStages.get(stageIndex).withJobCompleted(jobKey, jobState));
+		patched.updateLastUpdateTime(time);
+		return patched;
+	}
+	
 	/**
 	 * Get the project name associated with this result.
 	 * 
@@ -312,6 +425,32 @@ public class ProjectReport {
 		return this.getContributorsSortedBy(new RecentCommitComparator());
 	}
 	
+	// Return the index of the stage containing the given job of the given build,
+	// -1 if this report is for another build or no stage contains the job.
+	private int indexOfStage(int buildNumber, String jobKey) {
+		if (currentBuild == null || currentBuild.getBuildNumber() != buildNumber) {
+			return -1;
+		}
+		for (int i = 0; i < pipelineStages.size(); i++) {
+			if (pipelineStages.get(i).containsJob(jobKey)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	// Return a copy of this report, which can be patched without affecting this one.
+	private ProjectReport copy() {
+		ProjectReport report = new ProjectReport(projectName, planName, projectKey, planKey);
+		report.lastDeploymentTime = lastDeploymentTime;
+		report.lastUpdate = lastUpdate;
+		report.numChanges = numChanges;
+		report.contributors.putAll(contributors);
+		report.currentBuild = currentBuild;
+		report.pipelineStages.addAll(pipelineStages);
+		return report;
+	}
+	
 	// Return a list of all Contributors sorted by the given comparator of Contributors.
 	private List<Contributor> getContributorsSortedBy(Comparator<Contributor> c){
 		TreeSet<Contributor> results = new TreeSet<Contributor>(c);
@@ -22,7 +22,10 @@ public class ProjectReportFactory {
     private PlanManager planManager;
 
 
-    private static final int MAX_BUILD_TO_GET = 10;
+    // The search for the last deployment reads this many builds first, then pages
+    // twice as large each time, up to MAX_BUILD_TO_GET builds at a time.
+    private static final int FIRST_BUILDS_TO_GET = 10;
+    private static final int MAX_BUILD_TO_GET = 640;
 
     /**
      * Return a CDResult with project name, plan name, days, changes, contributors info since
@@ -39,6 +42,28 @@ public class ProjectReportFactory {
 			throw new IllegalArgumentException("Passed in null arguments.");
 		}
 		
+		BuildsSinceLastCompletion recentBuilds = new BuildsSinceLastCompletion();
+		new BuildHistoryScanner(resultsSummaryManager, FIRST_BUILDS_TO_GET, MAX_BUILD_TO_GET).scan(plan, recentBuilds);
+		
+		return createCDResult(plan, recentBuilds.getBuilds(), contributorBuilder, planExecutionManager);
+	}
+	
+	/**
+	 * Return a CDResult with project name, plan name, days, changes, contributors info since
+	 * last deployment and current build information (name, last update time, pipeline stages
+	 * with status) based on the given plan and its most recent builds, as collected by
+	 * BuildsSinceLastCompletion during a scan of the build history.
+	 * 
+	 * @param recentBuilds of the plan, newest first, back to the last deployment
+	 * @return a fully constructed CDResult object
+	 */
+	public static ProjectReport createCDResult(Plan plan, List<ResultsSummary> recentBuilds,
+											   ContributorBuilder contributorBuilder, PlanExecutionManager planExecutionManager) {
+		
+		if (plan == null) {
+			throw new IllegalArgumentException("Passed in null arguments.");
+		}
+		
 		String planName = plan.getName();
 		String planKey = plan.getKey();
 		
@@ -57,16 +82,15 @@ public class ProjectReportFactory {
 
         ProjectReport cdresult = new ProjectReport(projectName, strippedPlanName, projectKey, planKey);
 
-        List<ResultsSummary> buildList = resultsSummaryManager.getResultSummariesForPlan(plan, 0, 1);
-        if(buildList == null || buildList.size() <= 0){
+        if(recentBuilds == null || recentBuilds.size() <= 0){
 			// set special current build when there are no builds
 			Build currentBuild = new Build(null, null);
 			cdresult.setCurrentBuild(currentBuild);
 			return cdresult;
 		}
 		
-		setLastDeploymentInfo(cdresult, plan, resultsSummaryManager, contributorBuilder);
-		setCurrentBuildInfo(cdresult, buildList, planExecutionManager);
+		setLastDeploymentInfo(cdresult, recentBuilds, contributorBuilder);
+		setCurrentBuildInfo(cdresult, recentBuilds, planExecutionManager);
 		
 		return cdresult;
 	}
@@ -74,54 +98,29 @@ public class ProjectReportFactory {
 	
 	/*
 	 * Set the lastDeploymentTime, numChanges, and contributors info since last
-	 * deployment in the cdresult. 
+	 * deployment in the cdresult, out of the most recent builds of the plan, newest
+	 * first, back to the last deployment.
 	 * If there are no builds, cdresult will maintain the default values. 
 	 * If there are no last deployment, lastDeploymentTime will be default, and 
 	 * changes and contributors will be since the first build.
 	 */
-    protected static void setLastDeploymentInfo(ProjectReport cdresult, Plan plan, ResultsSummaryManager resultsSummaryManager,
+    protected static void setLastDeploymentInfo(ProjectReport cdresult, List<ResultsSummary> recentBuilds,
                                                 ContributorBuilder contributorBuilder) {
 
-		// At this point: at least one build in the build list
-		
 		int totalChanges = 0;
 		
-		List<ResultsSummary> partialList = resultsSummaryManager.getResultSummariesForPlan(plan, 0, 1);
-		// Do nothing if no builds in the build list
-		if(partialList == null || partialList.size() <= 0){
-			return;
-		}
-		
-		// add changes and contributors of the first build
-		// into cdresult
-		totalChanges += partialList.get(0).getCommits().size();
-		addAllAuthorsInCommits(cdresult, partialList.get(0).getCommits(), contributorBuilder);
-		
-		int startIndex = 1;
-		boolean found = false;
-		// get previous builds until reaching the end of builds
-		while(!found && (startIndex == 1 || partialList.size() >= MAX_BUILD_TO_GET)){
-			
-			// get previous builds
-			partialList = resultsSummaryManager.getResultSummariesForPlan(plan, startIndex, MAX_BUILD_TO_GET);
+		for (int i = 0; i < recentBuilds.size(); i++) {
+			ChainResultsSummary currentBuild = (ChainResultsSummary) recentBuilds.get(i);
 			
-			for (int i = 0; i < partialList.size(); i++) { 
-				ChainResultsSummary currentBuild = (ChainResultsSummary) partialList.get(i);	
-				
-				// check if current build is the last deployment
-				if (!currentBuild.isContinuable() && currentBuild.isSuccessful()) {
-					cdresult.setLastDeploymentTime(currentBuild.getBuildCompletedDate()); 
-					found = true;
-					break;
-				}
-				
-				List<Commit> commits = currentBuild.getCommits();
-				totalChanges += commits.size();
-				addAllAuthorsInCommits(cdresult, commits, contributorBuilder);
+			// check if current build is the last deployment
+			if (i > 0 && ChangeListFactory.isCompletion(currentBuild)) {
+				cdresult.setLastDeploymentTime(currentBuild.getBuildCompletedDate());
+				break;
 			}
 			
-			//update starting point
-			startIndex += MAX_BUILD_TO_GET;
+			List<Commit> commits = currentBuild.getCommits();
+			totalChanges += commits.size();
+			addAllAuthorsInCommits(cdresult, commits, contributorBuilder);
 		}
 		
 		// set #changes (contributors and date are set in the progress)
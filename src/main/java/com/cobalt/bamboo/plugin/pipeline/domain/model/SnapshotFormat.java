@@ -0,0 +1,57 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Helpers shared by the model classes to write themselves into, and read themselves
+ * back from, the binary snapshot of the wallboard. Nullable values are prefixed with
+ * a presence flag.
+ */
+final class SnapshotFormat {
+
+	private SnapshotFormat() {
+	}
+
+	static void writeString(DataOutput out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	static String readString(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	static void writeDate(DataOutput out, Date value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeLong(value.getTime());
+		}
+	}
+
+	static Date readDate(DataInput in) throws IOException {
+		return in.readBoolean() ? new Date(in.readLong()) : null;
+	}
+
+	// Enums are written by name, not ordinal, so that Bamboo's own enums can be
+	// reordered between versions without corrupting the snapshot.
+	static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+		writeString(out, value == null ? null : value.name());
+	}
+
+	static <E extends Enum<E>> E readEnum(DataInput in, Class<E> type) throws IOException {
+		String name = readString(in);
+		if (name == null) {
+			return null;
+		}
+		try {
+			return Enum.valueOf(type, name);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown " + type.getSimpleName() + " " + name);
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package com.cobalt.bamboo.plugin.pipeline.domain.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Date;
 
 public class UptimeGrade {
@@ -38,6 +41,40 @@ public class UptimeGrade {
 		this.currentBuildSuccess = currentBuildSuccess;
 	}
 	
+	/**
+	 * Return a copy of this grade, which can be updated without changing this grade.
+	 * @return a copy of this grade
+	 */
+	public UptimeGrade copy() {
+		return new UptimeGrade(startDate, totalUptime, currentBuildSuccess, currentBuildDate);
+	}
+	
+	/**
+	 * Write the accumulated state of this grade into the given snapshot output.
+	 * @param out to write to
+	 * @throws IOException if the output can't be written
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		SnapshotFormat.writeDate(out, startDate);
+		out.writeLong(totalUptime);
+		out.writeBoolean(currentBuildSuccess);
+		SnapshotFormat.writeDate(out, currentBuildDate);
+	}
+	
+	/**
+	 * Read a grade previously written by {@link #writeTo(DataOutput)}.
+	 * @param in to read from
+	 * @return the restored grade
+	 * @throws IOException if the input can't be read or is corrupted
+	 */
+	public static UptimeGrade readFrom(DataInput in) throws IOException {
+		Date startDate = SnapshotFormat.readDate(in);
+		long totalUptime = in.readLong();
+		boolean currentBuildSuccess = in.readBoolean();
+		Date currentBuildDate = SnapshotFormat.readDate(in);
+		return new UptimeGrade(startDate, totalUptime, currentBuildSuccess, currentBuildDate);
+	}
+	
 	/**
 	 * Get the uptime percentage of this grade
 	 * Return -1 if there's no completed build.
@@ -61,7 +98,16 @@ public class UptimeGrade {
 	 * @return the grade based on the uptime percentage
 	 */
 	public String getGrade(){
-		double uptimePercentage = getUptimePercentage();
+		return getGrade(getUptimePercentage());
+	}
+	
+	/**
+	 * Get the grade for the given uptime percentage
+	 * Return null if the uptime percentage is negative, i.e. there's no completed build.
+	 * @param uptimePercentage to grade
+	 * @return the grade based on the uptime percentage
+	 */
+	public static String getGrade(double uptimePercentage){
 		if(uptimePercentage < 0){
 			return null;
 		}
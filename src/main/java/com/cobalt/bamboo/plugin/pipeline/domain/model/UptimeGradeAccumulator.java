@@ -0,0 +1,61 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+
+import java.util.Date;
+
+/**
+ * Computes an UptimeGrade in a single pass over the build history of a plan, so that
+ * the history can be read a page at a time and each page dropped once added.
+ * 
+ * Builds must be added from the newest to the oldest. Builds that aren't completed
+ * are ignored. Only the running totals are kept, whatever the length of the history.
+ */
+public class UptimeGradeAccumulator implements BuildHistoryAggregator {
+	private long startTime;
+	private Date currentBuildDate;
+	private boolean currentBuildSuccess;
+	private long lastBuildTime;
+	private long totalUptime;
+	
+	/**
+	 * Add the given build, which must be older than all the builds already added.
+	 * @param build the build to add
+	 * @return true, the whole history is needed
+	 */
+	@Override
+	public boolean addOlderBuild(ResultsSummary build) {
+		Date completedDate = build.getBuildCompletedDate();
+		if (completedDate != null) {
+			addOlderBuild(completedDate.getTime(), build.isSuccessful());
+		}
+		return true;
+	}
+	
+	/**
+	 * Add the given completed build, which must be older than all the builds already
+	 * added.
+	 * @param completedTime of the build
+	 * @param successful whether the build is successful
+	 */
+	public void addOlderBuild(long completedTime, boolean successful) {
+		if (currentBuildDate == null) {
+			// the most recent completed build
+			currentBuildDate = new Date(completedTime);
+			currentBuildSuccess = successful;
+		} else if (successful) {
+			totalUptime += lastBuildTime - completedTime;
+		}
+		lastBuildTime = completedTime;
+		startTime = completedTime;
+	}
+	
+	/**
+	 * Get the UptimeGrade of all the builds added so far.
+	 * @return the UptimeGrade of the builds added
+	 */
+	public UptimeGrade getUptimeGrade() {
+		Date startDate = currentBuildDate == null ? null : new Date(startTime);
+		return new UptimeGrade(startDate, totalUptime, currentBuildSuccess, currentBuildDate);
+	}
+}
@@ -0,0 +1,284 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Uptime of a plan over the rolling windows of the last 7, 30 and 90 days, next to
+ * the all-time UptimeGrade.
+ *
+ * Only the changes between a successful and a failed build are recorded, each with
+ * the uptime accumulated up to it, in a ring buffer of fixed size. The uptime of a
+ * window is the difference of the uptime accumulated at both of its ends, found by a
+ * binary search over the ring, so it costs the same whatever the history of the plan.
+ * A plan that changed state more often than the ring holds has its windows clipped to
+ * the oldest change still recorded.
+ *
+ * The windows are loaded from the history of the plan, newest build first, as a
+ * BuildHistoryAggregator that stops at the start of the longest window. Only the
+ * differences of the accumulated uptimes matter, so the changes loaded that way are
+ * recorded relative to the newest build. After that, each newly completed build is
+ * added by {@link #update(Build)}.
+ *
+ * This class is thread safe.
+ */
+public class UptimeWindows implements BuildHistoryAggregator {
+	public static final int[] WINDOW_DAYS = {7, 30, 90};
+	public static final long DAY = 24 * 60 * 60 * 1000L;
+	static final int CAPACITY = 256;
+
+	// ring buffer of the changes of state, oldest at position first
+	private final long[] times;
+	private final long[] uptimes;
+	private final boolean[] successful;
+	private int first;
+	private int count;
+	private long lastBuildTime;
+
+	/**
+	 * Construct an UptimeWindows without any build.
+	 */
+	public UptimeWindows() {
+		this.times = new long[CAPACITY];
+		this.uptimes = new long[CAPACITY];
+		this.successful = new boolean[CAPACITY];
+	}
+
+	/**
+	 * Add the given build, which must be older than all the builds already added.
+	 * Builds that aren't completed are ignored.
+	 * @param build the build to add
+	 * @return false once a build completed before the longest window was added,
+	 *         true otherwise
+	 */
+	@Override
+	public boolean addOlderBuild(ResultsSummary build) {
+		Date completedDate = build.getBuildCompletedDate();
+		if (completedDate == null) {
+			return true;
+		}
+		return addOlderBuild(completedDate.getTime(), build.isSuccessful(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Add the given completed build, which must be older than all the builds already
+	 * added.
+	 * @param completedTime of the build
+	 * @param isSuccessful whether the build is successful
+	 * @param now end of the windows
+	 * @return false once a build completed before the longest window was added, or
+	 *         the ring is full, true otherwise
+	 */
+	public synchronized boolean addOlderBuild(long completedTime, boolean isSuccessful, long now) {
+		if (count == 0) {
+			append(completedTime, 0, isSuccessful);
+			lastBuildTime = completedTime;
+		} else if (completedTime <= times[first]) {
+			long uptime = uptimes[first] - (isSuccessful ? times[first] - completedTime : 0);
+			if (successful[first] == isSuccessful) {
+				// the oldest state recorded started earlier
+				times[first] = completedTime;
+				uptimes[first] = uptime;
+			} else if (count == CAPACITY) {
+				return false;
+			} else {
+				first = (first + CAPACITY - 1) % CAPACITY;
+				count++;
+				times[first] = completedTime;
+				uptimes[first] = uptime;
+				successful[first] = isSuccessful;
+			}
+		}
+		return completedTime >= now - WINDOW_DAYS[WINDOW_DAYS.length - 1] * DAY;
+	}
+
+	/**
+	 * Update with the most recent build. Builds that aren't completed, or completed
+	 * before the last build added, are ignored.
+	 * @param newBuild to update in order to calculate the uptime percentages
+	 */
+	public void update(Build newBuild) {
+		Date buildCompletedDate = newBuild.getBuildCompletedDate();
+		if (buildCompletedDate != null) {
+			update(buildCompletedDate.getTime(), newBuild.isSuccessful());
+		}
+	}
+
+	/**
+	 * Update with the most recent completed build, given its completed time and
+	 * whether it is successful.
+	 * @param completedTime of the build
+	 * @param isSuccessful whether the build is successful
+	 */
+	public synchronized void update(long completedTime, boolean isSuccessful) {
+		if (count == 0) {
+			append(completedTime, 0, isSuccessful);
+		} else if (completedTime > lastBuildTime) {
+			int last = position(count - 1);
+			if (successful[last] != isSuccessful) {
+				long uptime = uptimes[last] + (successful[last] ? completedTime - times[last] : 0);
+				append(completedTime, uptime, isSuccessful);
+			}
+		} else {
+			return;
+		}
+		lastBuildTime = completedTime;
+	}
+
+	/**
+	 * Get the uptime percentage over the given number of days before the given time.
+	 * Return -1 if there's no completed build.
+	 * @param days of the window
+	 * @param now end of the window
+	 * @return the uptime percentage over the window
+	 */
+	public synchronized double getUptimePercentage(int days, long now) {
+		if (count == 0) {
+			return -1;
+		}
+		long start = Math.max(now - days * DAY, times[first]);
+		if (start >= now) {
+			return successful[position(count - 1)] ? 1 : 0;
+		}
+		return (getUptimeAt(now) - getUptimeAt(start)) * 1.0 / (now - start);
+	}
+
+	/**
+	 * Get the uptime percentage and grade of every window, as of now.
+	 * @return one Window per entry of {@link #WINDOW_DAYS}
+	 */
+	public List<Window> getWindows() {
+		long now = System.currentTimeMillis();
+		List<Window> windows = new ArrayList<Window>(WINDOW_DAYS.length);
+		for (int days : WINDOW_DAYS) {
+			windows.add(new Window(days, getUptimePercentage(days, now)));
+		}
+		return windows;
+	}
+
+	/**
+	 * Return a copy of these windows, which can be updated without changing these.
+	 * @return a copy of these windows
+	 */
+	public synchronized UptimeWindows copy() {
+		UptimeWindows copy = new UptimeWindows();
+		System.arraycopy(times, 0, copy.times, 0, CAPACITY);
+		System.arraycopy(uptimes, 0, copy.uptimes, 0, CAPACITY);
+		System.arraycopy(successful, 0, copy.successful, 0, CAPACITY);
+		copy.first = first;
+		copy.count = count;
+		copy.lastBuildTime = lastBuildTime;
+		return copy;
+	}
+
+	/**
+	 * Write the recorded changes into the given snapshot output.
+	 * @param out to write to
+	 * @throws IOException if the output can't be written
+	 */
+	public synchronized void writeTo(DataOutput out) throws IOException {
+		out.writeLong(lastBuildTime);
+		out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			int p = position(i);
+			out.writeLong(times[p]);
+			out.writeLong(uptimes[p]);
+			out.writeBoolean(successful[p]);
+		}
+	}
+
+	/**
+	 * Read the windows previously written by {@link #writeTo(DataOutput)}.
+	 * @param in to read from
+	 * @return the restored windows
+	 * @throws IOException if the input can't be read or is corrupted
+	 */
+	public static UptimeWindows readFrom(DataInput in) throws IOException {
+		UptimeWindows windows = new UptimeWindows();
+		long lastBuildTime = in.readLong();
+		int count = in.readInt();
+		if (count < 0 || count > CAPACITY) {
+			throw new IOException("Invalid number of uptime changes " + count);
+		}
+		for (int i = 0; i < count; i++) {
+			windows.append(in.readLong(), in.readLong(), in.readBoolean());
+		}
+		windows.lastBuildTime = lastBuildTime;
+		return windows;
+	}
+
+	// Get the uptime accumulated up to the given time, which isn't before the oldest change.
+	private long getUptimeAt(long time) {
+		// the last change at or before the given time
+		int lo = 0;
+		int hi = count - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (times[position(mid)] <= time) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		int p = position(lo);
+		return uptimes[p] + (successful[p] ? time - times[p] : 0);
+	}
+
+	// Record a change, dropping the oldest one if the ring is full.
+	private void append(long time, long uptime, boolean isSuccessful) {
+		if (count == CAPACITY) {
+			first = (first + 1) % CAPACITY;
+			count--;
+		}
+		int p = position(count);
+		times[p] = time;
+		uptimes[p] = uptime;
+		successful[p] = isSuccessful;
+		count++;
+	}
+
+	// Get the position in the ring of the change at the given index, oldest first.
+	private int position(int index) {
+		return (first + index) % CAPACITY;
+	}
+
+	/**
+	 * Uptime percentage and grade over one window.
+	 */
+	public static class Window {
+		private final int days;
+		private final double uptimePercentage;
+
+		Window(int days, double uptimePercentage) {
+			this.days = days;
+			this.uptimePercentage = uptimePercentage;
+		}
+
+		/**
+		 * @return the number of days of the window
+		 */
+		public int getDays() {
+			return days;
+		}
+
+		/**
+		 * @return the uptime percentage over the window, -1 if there's no completed build
+		 */
+		public double getUptimePercentage() {
+			return uptimePercentage;
+		}
+
+		/**
+		 * @return the grade based on the uptime percentage, null if there's no completed build
+		 */
+		public String getGrade() {
+			return UptimeGrade.getGrade(uptimePercentage);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.services;
+
+import com.atlassian.bamboo.plan.Plan;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.BuildHistoryAggregator;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.BuildHistoryScanner;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.BuildsSinceLastCompletion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access to the build history of plans, read a page at a time through
+ * ResultsSummaryManager.
+ */
+public class BuildHistoryDao {
+    // Number of builds read at a time when only the most recent builds of a plan are needed.
+    static final int RECENT_PAGE_SIZE = 25;
+    // Number of builds read at a time when going through the whole history of a plan.
+    static final int HISTORY_PAGE_SIZE = 200;
+
+    private final ResultsSummaryManager resultsSummaryManager;
+
+    public BuildHistoryDao(ResultsSummaryManager resultsSummaryManager) {
+        this.resultsSummaryManager = resultsSummaryManager;
+    }
+
+    /**
+     * Get the most recent builds of the given plan, with their commits, back to the
+     * last pipeline completion before the newest build, or to the deployment horizon.
+     * Pages grow as the walk goes further back.
+     *
+     * @param plan to get the builds of
+     * @return the most recent builds, newest first
+     */
+    public List<ResultsSummary> getBuildsSinceLastCompletion(Plan plan) {
+        BuildsSinceLastCompletion recentBuilds = new BuildsSinceLastCompletion();
+        new BuildHistoryScanner(resultsSummaryManager, RECENT_PAGE_SIZE, HISTORY_PAGE_SIZE).scan(plan, recentBuilds);
+        return recentBuilds.getBuilds();
+    }
+
+    /**
+     * Get the most recent builds of the given plan.
+     *
+     * @param plan      to get the builds of
+     * @param maxBuilds maximum number of builds to get
+     * @return the most recent builds, newest first
+     */
+    public List<ResultsSummary> getLatestBuilds(Plan plan, int maxBuilds) {
+        List<ResultsSummary> builds = resultsSummaryManager.getResultSummariesForPlan(plan, 0, maxBuilds);
+        return builds != null ? builds : new ArrayList<ResultsSummary>();
+    }
+
+    /**
+     * Feed the whole build history of the given plan to the given aggregators, in a
+     * single pass, newest first.
+     *
+     * @param plan        to read the history of
+     * @param aggregators to feed the builds to
+     * @return the number of builds read
+     */
+    public int scan(Plan plan, BuildHistoryAggregator... aggregators) {
+        return new BuildHistoryScanner(resultsSummaryManager, HISTORY_PAGE_SIZE).scan(plan, aggregators);
+    }
+}
@@ -1,23 +1,17 @@
 package com.cobalt.bamboo.plugin.pipeline.domain.services;
 
 import com.atlassian.bamboo.plan.TopLevelPlan;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.Change;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.DeliveryMetrics;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.PerformanceSummary;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.PlanStatistics;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.ProjectReport;
-import com.cobalt.bamboo.plugin.pipeline.domain.model.UptimeGrade;
 
 import java.util.List;
 
 public interface PlanService {
 
-    /**
-     * Get all the results needed for displaying the CDPipeline table.
-	 * 
-	 * @return a list of CDResults, where each CDResult represents one row.
-	 *         See CDResults for more details.
-	 */
-    public List<ProjectReport> getCDResults();
-
     /**
      * Get the result needed for displaying the CDPipeline table for the plan
 	 * specified by the given playkey.
@@ -38,9 +32,22 @@ public interface PlanService {
 	 */
 	public List<Change> getChangeListForPlan(String planKey);
 	
+	/**
+	 * Bring the cached list of Changes of the plan specified by the given plankey up
+	 * to date with its most recent builds. Does nothing if the list of Changes of the
+	 * plan hasn't been asked for yet.
+	 * 
+	 * @param planKey of the plan to update
+	 */
+	public void updateChangeListForPlan(String planKey);
+	
 	/**
 	 * Get a CDPerformance for the plan specified by the given plankey.
 	 * If no plan found or no build in the plan, return null.
+	 * The first call for a plan walks its whole history, commits included, on its own
+	 * rather than as part of {@link #getPlanStatistics(String)}: the contributors of
+	 * each completion need the authors of its commits, which a refresh doesn't load.
+	 * Later calls only add the new builds.
 	 * @param planKey planKey of the plan to look for
 	 * @return the continuous delivery performance statistics for the given plan.
 	 *         Return null if no plan can be found for the given plankey or no build
@@ -48,16 +55,74 @@ public interface PlanService {
 	 */
     public PerformanceSummary getPerformanceStatsForPlan(String planKey);
 
-    /**
-     * Get a UptimeGrade for the plan specified by the given planKey.
-	 * If no plan found or no build in the plan, return null.
+	/**
+	 * Bring the cached CDPerformance of the plan specified by the given plankey up to
+	 * date with the builds completed since it was last updated. Does nothing if the
+	 * CDPerformance of the plan hasn't been asked for yet.
+	 * @param planKey planKey of the plan to update
+	 */
+	public void updatePerformanceStatsForPlan(String planKey);
+
+	/**
+	 * Get the DeliveryMetrics of the plan specified by the given planKey: deployment
+	 * frequency, lead time, change failure rate and time to restore over its most
+	 * recent deployments. The metrics are derived from the BuildHistoryIndex of the
+	 * plan, which is loaded from its most recent builds on the first request and kept
+	 * up to date after that.
 	 * 
 	 * @param planKey planKey of the plan to look for
-	 * @return the UptimeGrade, representing the uptime percentage, of the plan.
-	 *         Return null if no plan can be found for the given plankey or no build
-	 *         in the plan.
+	 * @return the delivery metrics of the plan. Return null if no plan can be found
+	 *         for the given plankey.
+	 */
+	public DeliveryMetrics getDeliveryMetricsForPlan(String planKey);
+	
+	/**
+	 * Add the builds completed since the BuildHistoryIndex of the plan specified by the
+	 * given plankey was last updated. Does nothing if the index of the plan hasn't
+	 * been built yet.
+	 * @param planKey planKey of the plan to update
+	 */
+	public void updateBuildHistoryIndexForPlan(String planKey);
+	
+	/**
+	 * Get the CDResult and the UptimeGrade of the plan specified by the given planKey
+	 * out of a single pass over its build history. The same pass brings the cached
+	 * list of Changes of the plan, if any, up to date.
+	 * 
+	 * @param planKey planKey of the plan to look for
+	 * @return the CDResult and UptimeGrade of the plan. Return null if no plan can be
+	 *         found for the given plankey.
+	 */
+	public PlanStatistics getPlanStatistics(String planKey);
+	
+	/**
+	 * Drop everything held for the plan specified by the given planKey, so that it is
+	 * loaded again from its build history on the next request, e.g. once the plan is
+	 * deleted, or its history no longer matches what was held.
+	 * 
+	 * @param planKey planKey of the plan to drop
+	 */
+	public void evictPlan(String planKey);
+	
+	/**
+	 * Get the most recent build (queued, in progress or completed) of the plan
+	 * specified by the given planKey, directly from Bamboo.
+	 * 
+	 * @param planKey planKey of the plan to look for
+	 * @return the ResultsSummary of the most recent build. Return null if no plan can
+	 *         be found for the given plankey or no build in the plan.
+	 */
+	public ResultsSummary getLatestResultForPlan(String planKey);
+	
+	/**
+	 * Get the given build of the plan (or job) specified by the given planKey,
+	 * directly from Bamboo.
+	 * 
+	 * @param planKey planKey of the plan or job to look for
+	 * @param buildNumber of the build to look for
+	 * @return the ResultsSummary of the build. Return null if no such build can be found.
 	 */
-	public UptimeGrade getUptimeGradeForPlan(String planKey);
+	public ResultsSummary getResultForBuild(String planKey, int buildNumber);
 	
 	/**
 	 * Get all TopLevelPlans directly from Bamboo.
@@ -6,50 +6,144 @@ import com.atlassian.bamboo.resultsummary.ResultsSummary;
 import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.*;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The main controller of CDPipeline Plugin Project that handles getting the
  * results needed for displaying.
  */
 public class PlanServiceImpl implements PlanService {
+    // Number of builds read at a time when only the most recent builds of a plan are
+    // needed. A plan with more new builds than that has its CDPerformance rebuilt.
+    private static final int BUILD_PAGE_SIZE = BuildHistoryDao.RECENT_PAGE_SIZE;
+
     private PlanManager planManager;
     private ResultsSummaryManager resultsSummaryManager;
+    private BuildHistoryDao historyDao;
     private PlanExecutionManager planExecutionManager;
     private JiraApplinksService jiraApplinksService;
     private ContributorBuilder contributorBuilder;
+    private final ConcurrentMap<String, PerformanceAccumulator> performanceCache =
+            new ConcurrentHashMap<String, PerformanceAccumulator>();
+    private final ConcurrentMap<String, PlanChangeList> changeListCache =
+            new ConcurrentHashMap<String, PlanChangeList>();
+    // concurrent requests for a plan that isn't cached yet share a single load
+    private final SingleFlight<String, PlanChangeList> changeListLoads = new SingleFlight<String, PlanChangeList>();
+    private final SingleFlight<String, PerformanceAccumulator> performanceLoads =
+            new SingleFlight<String, PerformanceAccumulator>();
+    private final ConcurrentMap<String, BuildHistoryIndex> historyIndexCache =
+            new ConcurrentHashMap<String, BuildHistoryIndex>();
 
     @Override
-    public List<ProjectReport> getCDResults() {
-        List<ProjectReport> resultList = new ArrayList<ProjectReport>();
+    public List<Change> getChangeListForPlan(final String planKey) {
+        PlanKey planKeyObj = PlanKeys.getPlanKey(planKey);
+        final Plan plan = planManager.getPlanByKey(planKeyObj);
 
-        List<TopLevelPlan> plans = planManager.getAllPlans(TopLevelPlan.class);
-        for (Plan plan : plans) {
+        if (plan == null) {
+            changeListCache.remove(planKey);
+            return null;
+        }
 
-            ProjectReport result = ProjectReportFactory.createCDResult(plan, contributorBuilder, planExecutionManager, resultsSummaryManager);
-            resultList.add(result);
+        PlanChangeList changeList = changeListCache.get(planKey);
+        if (changeList == null) {
+            changeList = changeListLoads.execute(planKey, new SingleFlight.Computation<PlanChangeList>() {
+
+                @Override
+                public PlanChangeList compute() {
+                    PlanChangeList loaded = new PlanChangeList(contributorBuilder);
+                    loaded.update(getBuildsSinceLastCompletion(plan));
+                    PlanChangeList existing = changeListCache.putIfAbsent(planKey, loaded);
+                    return existing != null ? existing : loaded;
+                }
+            });
         }
 
-        return resultList;
+        return changeList.getChanges();
     }
 
     @Override
-    public List<Change> getChangeListForPlan(String planKey) {
+    public void updateChangeListForPlan(String planKey) {
+        PlanChangeList changeList = changeListCache.get(planKey);
+        if (changeList == null) {
+            return;
+        }
+
         PlanKey planKeyObj = PlanKeys.getPlanKey(planKey);
         Plan plan = planManager.getPlanByKey(planKeyObj);
+        if (plan == null) {
+            changeListCache.remove(planKey);
+            return;
+        }
+
+        changeList.update(getBuildsSinceLastCompletion(plan));
+    }
+
+    @Override
+    public PerformanceSummary getPerformanceStatsForPlan(final String planKey) {
+        PlanKey planKeyObj = PlanKeys.getPlanKey(planKey);
+        final Plan plan = planManager.getPlanByKey(planKeyObj);
 
         if (plan == null) {
             return null;
         }
 
-        List<ResultsSummary> buildList = resultsSummaryManager.getResultSummariesForPlan(plan, 0, 0);
+        PerformanceAccumulator accumulator = performanceCache.get(planKey);
+        if (accumulator == null) {
+            accumulator = performanceLoads.execute(planKey, new SingleFlight.Computation<PerformanceAccumulator>() {
+
+                @Override
+                public PerformanceAccumulator compute() {
+                    // the most recent builds that can still change are left out of the
+                    // history, and applied on top of it instead
+                    List<ResultsSummary> latestBuilds = historyDao.getLatestBuilds(plan, BUILD_PAGE_SIZE);
+                    PerformanceAccumulator loaded = new PerformanceAccumulator(contributorBuilder,
+                            PerformanceAccumulator.getFirstUnsettledBuildNumber(latestBuilds));
+                    if (historyDao.scan(plan, loaded) == 0) {
+                        return null;
+                    }
+                    loaded.addLatestBuilds(latestBuilds);
+
+                    PerformanceAccumulator existing = performanceCache.putIfAbsent(planKey, loaded);
+                    return existing != null ? existing : loaded;
+                }
+            });
+        }
 
-        return ChangeListFactory.buildChangeList(buildList, contributorBuilder);
+        return accumulator != null ? accumulator.getSummary() : null;
     }
 
     @Override
-    public PerformanceSummary getPerformanceStatsForPlan(String planKey) {
+    public void updatePerformanceStatsForPlan(String planKey) {
+        PerformanceAccumulator accumulator = performanceCache.get(planKey);
+        if (accumulator == null) {
+            return;
+        }
+
+        PlanKey planKeyObj = PlanKeys.getPlanKey(planKey);
+        Plan plan = planManager.getPlanByKey(planKeyObj);
+        if (plan == null) {
+            performanceCache.remove(planKey);
+            return;
+        }
+
+        // Every build newer than the last one added for good is applied, so that the
+        // builds that were still running or waiting at a manual stage are applied again
+        List<ResultsSummary> latestBuilds = historyDao.getLatestBuilds(plan, BUILD_PAGE_SIZE);
+        synchronized (accumulator) {
+            if (latestBuilds.size() >= BUILD_PAGE_SIZE
+                    && latestBuilds.get(latestBuilds.size() - 1).getBuildNumber() > accumulator.getLastBuildNumber()) {
+                // too many builds were missed, rebuild it on the next request
+                performanceCache.remove(planKey, accumulator);
+                return;
+            }
+            accumulator.addLatestBuilds(latestBuilds);
+        }
+    }
+
+    @Override
+    public DeliveryMetrics getDeliveryMetricsForPlan(String planKey) {
         PlanKey planKeyObj = PlanKeys.getPlanKey(planKey);
         Plan plan = planManager.getPlanByKey(planKeyObj);
 
@@ -57,13 +151,43 @@ public class PlanServiceImpl implements PlanService {
             return null;
         }
 
-        List<ResultsSummary> buildList = resultsSummaryManager.getResultSummariesForPlan(plan, 0, 0);
+        // derived from the index of the plan, which is kept up to date on its own, so
+        // the metrics hold no state of their own
+        return DeliveryMetricsFactory.createDeliveryMetrics(getBuildHistoryIndex(plan), System.currentTimeMillis());
+    }
+
+    @Override
+    public void updateBuildHistoryIndexForPlan(String planKey) {
+        BuildHistoryIndex index = historyIndexCache.get(planKey);
+        if (index == null) {
+            return;
+        }
+
+        PlanKey planKeyObj = PlanKeys.getPlanKey(planKey);
+        Plan plan = planManager.getPlanByKey(planKeyObj);
+        if (plan == null) {
+            historyIndexCache.remove(planKey);
+            return;
+        }
 
-        return PerformanceSummaryCreator.create(buildList, contributorBuilder);
+        // Builds may complete out of order, or again once rerun or continued, so every
+        // completed build of the page is offered to the index, which replaces the ones
+        // that changed and ignores the others
+        List<ResultsSummary> latestBuilds = historyDao.getLatestBuilds(plan, BUILD_PAGE_SIZE);
+        int lastBuildNumber = index.getLastBuildNumber();
+        for (ResultsSummary build : latestBuilds) {
+            index.addBuild(build);
+        }
+
+        if (latestBuilds.size() >= BUILD_PAGE_SIZE
+                && latestBuilds.get(latestBuilds.size() - 1).getBuildNumber() > lastBuildNumber) {
+            // too many builds were missed, rebuild it on the next request
+            historyIndexCache.remove(planKey, index);
+        }
     }
 
     @Override
-    public UptimeGrade getUptimeGradeForPlan(String planKey) {
+    public PlanStatistics getPlanStatistics(String planKey) {
         PlanKey planKeyObj = PlanKeys.getPlanKey(planKey);
         Plan plan = planManager.getPlanByKey(planKeyObj);
 
@@ -71,9 +195,33 @@ public class PlanServiceImpl implements PlanService {
             return null;
         }
 
-        List<ResultsSummary> buildList = resultsSummaryManager.getResultSummariesForPlan(plan, 0, 0);
+        // Feed every statistic of the plan from the same pass over its history. Only
+        // the recent builds have their commits and stages loaded, the uptime is
+        // streamed into running totals so that nothing is kept per build. The
+        // CDPerformance, which needs the commits of every build, is loaded once it is
+        // asked for.
+        BuildsSinceLastCompletion recentBuilds = new BuildsSinceLastCompletion();
+        UptimeGradeAccumulator uptime = new UptimeGradeAccumulator();
+        UptimeWindows uptimeWindows = new UptimeWindows();
+        PlanDurations durations = new PlanDurations();
+        historyDao.scan(plan, recentBuilds, uptime, uptimeWindows, durations);
+
+        List<ResultsSummary> builds = recentBuilds.getBuilds();
+        PlanChangeList changeList = changeListCache.get(planKey);
+        if (changeList != null) {
+            changeList.update(builds);
+        }
+
+        ProjectReport projectReport = ProjectReportFactory.createCDResult(plan, builds, contributorBuilder,
+                planExecutionManager);
+        return new PlanStatistics(projectReport, uptime.getUptimeGrade(), uptimeWindows, durations);
+    }
 
-        return UptimeGradeFactory.createUptimeGrade(buildList);
+    @Override
+    public void evictPlan(String planKey) {
+        performanceCache.remove(planKey);
+        changeListCache.remove(planKey);
+        historyIndexCache.remove(planKey);
     }
 
     @Override
@@ -88,6 +236,55 @@ public class PlanServiceImpl implements PlanService {
         return ProjectReportFactory.createCDResult(plan, contributorBuilder, planExecutionManager, resultsSummaryManager);
     }
 
+    @Override
+    public ResultsSummary getLatestResultForPlan(String planKey) {
+        PlanKey planKeyObj = PlanKeys.getPlanKey(planKey);
+        Plan plan = planManager.getPlanByKey(planKeyObj);
+
+        if (plan == null) {
+            return null;
+        }
+
+        List<ResultsSummary> buildList = historyDao.getLatestBuilds(plan, 1);
+        if (buildList.isEmpty()) {
+            return null;
+        }
+        return buildList.get(0);
+    }
+
+    /*
+     * Get the BuildHistoryIndex of the given plan, loading it from the most recent
+     * builds of the plan, as many as it holds, if it isn't held yet.
+     */
+    private BuildHistoryIndex getBuildHistoryIndex(Plan plan) {
+        String planKey = plan.getPlanKey().getKey();
+        BuildHistoryIndex index = historyIndexCache.get(planKey);
+        if (index == null) {
+            BuildHistoryIndex loaded = new BuildHistoryIndex();
+            historyDao.scan(plan, loaded);
+            index = historyIndexCache.putIfAbsent(planKey, loaded);
+            if (index == null) {
+                index = loaded;
+            }
+        }
+        return index;
+    }
+
+    /*
+     * Get the most recent builds of the given plan, newest first, back to the last
+     * pipeline completion before the newest build. Builds are read a page at a time,
+     * so that the rest of the history isn't loaded.
+     */
+    private List<ResultsSummary> getBuildsSinceLastCompletion(Plan plan) {
+        return historyDao.getBuildsSinceLastCompletion(plan);
+    }
+
+    @Override
+    public ResultsSummary getResultForBuild(String planKey, int buildNumber) {
+        PlanResultKey planResultKey = PlanKeys.getPlanResultKey(planKey, buildNumber);
+        return resultsSummaryManager.getResultsSummary(planResultKey);
+    }
+
     @Override
     public List<TopLevelPlan> getAllPlans() {
         return planManager.getAllPlans(TopLevelPlan.class);
@@ -107,6 +304,7 @@ public class PlanServiceImpl implements PlanService {
 
     public void setResultsSummaryManager(ResultsSummaryManager resultsSummaryManager) {
         this.resultsSummaryManager = resultsSummaryManager;
+        this.historyDao = new BuildHistoryDao(resultsSummaryManager);
     }
 
     public PlanExecutionManager getPlanExecutionManager() {
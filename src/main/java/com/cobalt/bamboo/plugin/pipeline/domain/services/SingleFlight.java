@@ -0,0 +1,137 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.services;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Makes sure only one computation per key is in flight at a time.
+ *
+ * Callers that ask for a computation that is already running wait for it and share
+ * its result, instead of running their own. Updates are never shared, since an update
+ * requested while another one runs may need to see changes the running one missed;
+ * they are handed to the caller running the current update, which runs them right
+ * after its own, one at a time.
+ *
+ * @param <K> type of the keys, e.g. plan keys
+ * @param <V> type of the results of the computations
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * A computation whose result can be shared by concurrent callers.
+     */
+    public interface Computation<V> {
+        V compute();
+    }
+
+    private final ConcurrentMap<K, FutureTask<V>> computations = new ConcurrentHashMap<K, FutureTask<V>>();
+    private final ConcurrentMap<K, Queue<Runnable>> updates = new ConcurrentHashMap<K, Queue<Runnable>>();
+
+    /**
+     * Run the given computation for the key, or wait for the one already running for
+     * the key and return its result.
+     *
+     * @param key         of the computation
+     * @param computation to run if none is running for the key
+     * @return the result of the computation
+     */
+    public V execute(K key, final Computation<V> computation) {
+        FutureTask<V> task = new FutureTask<V>(new Callable<V>() {
+
+            @Override
+            public V call() {
+                return computation.compute();
+            }
+        });
+
+        FutureTask<V> running = computations.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                computations.remove(key, task);
+            }
+            running = task;
+        }
+        return getResult(running);
+    }
+
+    /**
+     * Run the given update for the key, unless an update is already running for the
+     * key, in which case the update is handed to the caller running it and this
+     * method returns right away.
+     *
+     * @param key    of the update
+     * @param update to run
+     */
+    public void update(K key, Runnable update) {
+        Queue<Runnable> queue = new ArrayDeque<Runnable>();
+        while (true) {
+            Queue<Runnable> running = updates.putIfAbsent(key, queue);
+            if (running == null) {
+                break;
+            }
+            synchronized (running) {
+                // the queue is removed under its lock once drained
+                if (updates.get(key) == running) {
+                    running.add(update);
+                    return;
+                }
+            }
+        }
+
+        RuntimeException failure = null;
+        Runnable next = update;
+        while (next != null) {
+            try {
+                next.run();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            synchronized (queue) {
+                next = queue.poll();
+                if (next == null) {
+                    updates.remove(key, queue);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Wait for the given task and return its result, rethrowing what it threw.
+    private V getResult(FutureTask<V> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    // the result is shared, so keep waiting for it
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.cobalt.bamboo.plugin.pipeline.events;
 
+import com.atlassian.bamboo.event.BuildCompletedEvent;
 import com.atlassian.bamboo.event.ChainCompletedEvent;
 import com.atlassian.bamboo.event.HibernateEventListener;
 import com.atlassian.bamboo.v2.build.events.BuildQueuedEvent;
@@ -22,33 +23,43 @@ public class BuildActivityListener implements HibernateEventListener {
 	
 	@Override
 	public Class[] getHandledEventClasses() {
-		return new Class[]{BuildQueuedEvent.class, ChainCompletedEvent.class};
+		return new Class[]{BuildQueuedEvent.class, BuildCompletedEvent.class, ChainCompletedEvent.class};
 	}
 
 	@Override
 	public void handleEvent(Event event) {
         logger.info("Received event");
-        // Only need to listen to BuildQueuedEvent and ChainCompletedEvent because
-        // we stored the ResultsSummary in Build and ChainStageResult in PipelineStage,
-		// so the build states and status are directly fetched on the fly
+        // Jobs fire BuildQueuedEvent and BuildCompletedEvent. A stage starts when its
+        // jobs are queued and finishes when all of its jobs have completed, so these
+        // events only patch the stage of the job in the cache. An event the cache can't
+        // patch (e.g. the first job of a new build) falls back to an update of the whole
+        // plan, and the cache folds the bursts of each plan into one update.
 		if (event instanceof BuildQueuedEvent) {
             logger.info("Build queued event!");
             BuildQueuedEvent e = (BuildQueuedEvent) event;
 
-            // the given plan key is in the format of "PROJECT-PLAN-JOB"
-			// need to strip to just "PROJECT-PLAN"
-			String givenPlanKey = e.getPlanKey().getKey();
-			int endIndex = givenPlanKey.lastIndexOf("-");
-			final String planKey = givenPlanKey.substring(0, endIndex);
+            String jobKey = e.getPlanKey().getKey();
+			cacheManager.requestJobQueuedUpdate(getChainKey(jobKey), jobKey, e.getBuildNumber());
 			
-			cacheManager.updateWallBoardDataForPlan(planKey, false);
+		} else if (event instanceof BuildCompletedEvent) {
+            logger.info("Build completed event!");
+            BuildCompletedEvent e = (BuildCompletedEvent) event;
+
+            String jobKey = e.getPlanKey().getKey();
+			cacheManager.requestJobCompletedUpdate(getChainKey(jobKey), jobKey, e.getBuildNumber());
 			
 		} else if (event instanceof ChainCompletedEvent) {
             logger.info("Chain completed event!");
             ChainCompletedEvent e = (ChainCompletedEvent) event;
 
             // the given plan key is in the right format (PROJECT-PLAN)
-			cacheManager.updateWallBoardDataForPlan(e.getPlanKey().getKey(), true);
+			cacheManager.requestWallBoardDataUpdate(e.getPlanKey().getKey(), true);
 		}
 	}
+	
+	// The given job key is in the format of "PROJECT-PLAN-JOB",
+	// strip it to just "PROJECT-PLAN".
+	private String getChainKey(String jobKey) {
+		return jobKey.substring(0, jobKey.lastIndexOf("-"));
+	}
 }
@@ -4,9 +4,12 @@ import com.atlassian.sal.api.auth.LoginUriProvider;
 import com.atlassian.sal.api.user.UserManager;
 import com.atlassian.templaterenderer.TemplateRenderer;
 import com.cobalt.bamboo.plugin.pipeline.cache.CacheManager;
-import com.cobalt.bamboo.plugin.pipeline.cache.WallBoardData;
+import com.cobalt.bamboo.plugin.pipeline.cache.RenderedWallBoard;
+import com.cobalt.bamboo.plugin.pipeline.cache.WallBoardDelta;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.Change;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.DeliveryMetrics;
 import com.cobalt.bamboo.plugin.pipeline.domain.model.PerformanceSummary;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.PlanDurations;
 import com.cobalt.bamboo.plugin.pipeline.domain.services.PlanService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -17,10 +20,16 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URI;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MainPage extends HttpServlet{
 
+    // ObjectWriters are immutable and thread safe, so they are shared by all requests
+    private static final ObjectWriter WRITER = new ObjectMapper().writer();
+    private static final ObjectWriter PRETTY_WRITER = WRITER.withDefaultPrettyPrinter();
+
     private final UserManager userManager;
     private final LoginUriProvider loginUriProvider;
     private final TemplateRenderer renderer;
@@ -56,22 +65,52 @@ public class MainPage extends HttpServlet{
 		  response.setContentType("text/html;charset=utf-8");
 		  renderer.render("cdpipeline.vm", response.getWriter());
 	  } else if (query.equalsIgnoreCase("all")) {
-		  // Special Case: JSON request
-		  ObjectWriter writer = (new ObjectMapper()).writer().withDefaultPrettyPrinter();
-		  List<WallBoardData> resultList = cacheManager.getAllWallBoardData();
-		  String json = writer.writeValueAsString(resultList);
+		  // Special Case: JSON request, served from the pre-rendered board
+		  RenderedWallBoard board = cacheManager.getRenderedWallBoard();
+		  if (cacheManager.isLoading()) {
+			  // the board only holds the plans loaded so far
+			  response.setHeader("X-Pipeline-Loading", cacheManager.getLoadedPlanCount() + "/" + cacheManager.getTotalPlanCount());
+		  }
+		  response.setContentType("application/json;charset=utf-8");
+		  response.setContentLength(board.getJsonLength());
+		  board.writeJsonTo(response.getOutputStream());
+	  } else if (query.equalsIgnoreCase("delta")) {
+		  // Special Case: JSON request for the changes since the version the client has
+		  WallBoardDelta delta = cacheManager.getWallBoardDataSince(parseVersion(request.getParameter("since")));
+		  String json = WRITER.writeValueAsString(delta);
 		  response.setContentType("application/json;charset=utf-8");
 		  response.getWriter().write(json);
 	  } else if (query.equalsIgnoreCase("changes") && request.getParameter("plankey") != null){
           List<Change> changeList = planService.getChangeListForPlan(request.getParameter("plankey"));
-          ObjectWriter writer = (new ObjectMapper()).writer().withDefaultPrettyPrinter();
-          String json = writer.writeValueAsString(changeList);
+          String json = PRETTY_WRITER.writeValueAsString(changeList);
 		  response.setContentType("application/json;charset=utf-8");
 		  response.getWriter().write(json);
 	  } else if (query.equalsIgnoreCase("completions") && request.getParameter("plankey") != null){
           PerformanceSummary performance = planService.getPerformanceStatsForPlan(request.getParameter("plankey"));
-          ObjectWriter writer = (new ObjectMapper()).writer().withDefaultPrettyPrinter();
-          String json = writer.writeValueAsString(performance);
+          String json = PRETTY_WRITER.writeValueAsString(performance);
+		  response.setContentType("application/json;charset=utf-8");
+		  response.getWriter().write(json);
+	  } else if (query.equalsIgnoreCase("dora") && request.getParameter("plankey") != null){
+          DeliveryMetrics metrics = planService.getDeliveryMetricsForPlan(request.getParameter("plankey"));
+          String json = PRETTY_WRITER.writeValueAsString(metrics);
+		  response.setContentType("application/json;charset=utf-8");
+		  response.getWriter().write(json);
+	  } else if (query.equalsIgnoreCase("durations")) {
+		  // Special Case: JSON request for the percentiles of the build and stage durations
+		  // of a plan, of the plans of a project, or of all plans
+		  PlanDurations durations = cacheManager.getDurations(request.getParameter("project"),
+				  request.getParameter("plankey"));
+		  String json = PRETTY_WRITER.writeValueAsString(durations);
+		  response.setContentType("application/json;charset=utf-8");
+		  response.getWriter().write(json);
+	  } else if (query.equalsIgnoreCase("stats")) {
+		  // Special Case: JSON request for the counters of the plan updates
+		  Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		  stats.put("skippedUpdates", cacheManager.getSkippedUpdateCount());
+		  stats.put("outdatedUpdates", cacheManager.getOutdatedUpdateCount());
+		  stats.put("mergedUpdates", cacheManager.getMergedUpdateCount());
+		  stats.put("updateQueueDepth", cacheManager.getUpdateQueueDepth());
+		  String json = PRETTY_WRITER.writeValueAsString(stats);
 		  response.setContentType("application/json;charset=utf-8");
 		  response.getWriter().write(json);
 	  } else{
@@ -80,6 +119,19 @@ public class MainPage extends HttpServlet{
 	  }
     }
     
+    // Parse the version given by the client, 0 (the full board) if missing or invalid.
+    private long parseVersion(String since)
+    {
+      if (since == null) {
+        return 0;
+      }
+      try {
+        return Long.parseLong(since);
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+    
     private void redirectToLogin(HttpServletRequest request, HttpServletResponse response) throws IOException
     {
       response.sendRedirect(loginUriProvider.getLoginUri(getUri(request)).toASCIIString());
@@ -11,14 +11,41 @@ plugin.controller("BoardController", function ($scope, autoRefresh, $rootScope)
 	};
 });
 
-//polls a REST endpoint every five seconds and automatically refreshes
+//polls a REST endpoint every five seconds and automatically refreshes.
+//only the plans changed since the last poll are fetched and merged into the board.
 plugin.factory('autoRefresh', function ($http, $timeout, $rootScope) {
 	var data = { resp: {}};
+	var plans = {};
+	var version = 0;
 	var poller = function() {
-		$http.get('?data=all').then( function(r) {
-			data.resp = r.data;
+		$http.get('?data=delta&since=' + version).then( function(r) {
+			var delta = r.data;
+			if (delta.full) {
+				plans = {};
+			}
+			angular.forEach(delta.changed, function(result) {
+				plans[result.planKey] = result;
+			});
+			angular.forEach(delta.removed, function(planKey) {
+				delete plans[planKey];
+			});
+			version = delta.version;
+			// while the server is still loading the cache, show how far it got
+			data.loading = delta.loading;
+			data.loadedPlans = delta.loadedPlans;
+			data.totalPlans = delta.totalPlans;
+
+			var resp = [];
+			angular.forEach(plans, function(result) {
+				resp.push(result);
+			});
+			data.resp = resp;
 			$rootScope.dataLoaded = true;
 			$timeout(poller, 5000);
+		}, function() {
+			// start over with the full board on the next poll
+			version = 0;
+			$timeout(poller, 5000);
 		});
 	};
 	poller();
@@ -0,0 +1,180 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import com.atlassian.bamboo.plan.PlanKey;
+import com.atlassian.bamboo.plan.TopLevelPlan;
+import com.atlassian.sal.api.transaction.TransactionCallback;
+import com.atlassian.sal.api.transaction.TransactionTemplate;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.PlanStatistics;
+import com.cobalt.bamboo.plugin.pipeline.domain.services.PlanService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CacheManagerImplTest {
+	private CacheManagerImpl cacheManager;
+	private PlanService planService;
+	private List<Thread> threads;
+	// counted down by every transaction started
+	private CountDownLatch transactions;
+
+	@Before
+	public void setup() {
+		// a mock would run the transactions one at a time
+		TransactionTemplate transactionTemplate = new TransactionTemplate() {
+
+			@Override
+			public <T> T execute(TransactionCallback<T> action) {
+				transactions.countDown();
+				return action.doInTransaction();
+			}
+		};
+		planService = mock(PlanService.class);
+
+		cacheManager = new CacheManagerImpl();
+		cacheManager.setTransactionTemplate(transactionTemplate);
+		cacheManager.setPlanService(planService);
+		threads = new ArrayList<Thread>();
+		// the update of plan A, the updates of the other plans, and the patch of plan A
+		transactions = new CountDownLatch(CacheSettings.DB_CONCURRENCY + 1);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		cacheManager.destroy();
+		for (Thread thread : threads) {
+			thread.interrupt();
+			thread.join(5000);
+		}
+	}
+
+	@Test
+	public void testHandedOffPatchRunsWhileAllPermitsAreHeld() throws InterruptedException {
+		final CountDownLatch planALoading = new CountDownLatch(1);
+		final CountDownLatch releasePlanA = new CountDownLatch(1);
+		final CountDownLatch otherPlansLoading = new CountDownLatch(CacheSettings.DB_CONCURRENCY - 1);
+		final CountDownLatch releaseOtherPlans = new CountDownLatch(1);
+		final AtomicInteger planALoads = new AtomicInteger();
+		// each plan is stubbed on its own, since a mock runs the answers of a stub one at a time
+		when(planService.getPlanStatistics("PROJ-A")).thenAnswer(new Answer<PlanStatistics>() {
+
+			@Override
+			public PlanStatistics answer(InvocationOnMock invocation) throws InterruptedException {
+				if (planALoads.getAndIncrement() == 0) {
+					planALoading.countDown();
+					releasePlanA.await();
+				}
+				return null;
+			}
+		});
+		for (int i = 1; i < CacheSettings.DB_CONCURRENCY; i++) {
+			when(planService.getPlanStatistics("PROJ-" + i)).thenAnswer(new Answer<PlanStatistics>() {
+
+				@Override
+				public PlanStatistics answer(InvocationOnMock invocation) throws InterruptedException {
+					otherPlansLoading.countDown();
+					releaseOtherPlans.await();
+					return null;
+				}
+			});
+		}
+
+		// the update of plan A holds plan A and a permit
+		update("PROJ-A");
+		assertTrue("Update of plan A should start", planALoading.await(5, TimeUnit.SECONDS));
+		// the updates of the other plans hold every other permit
+		for (int i = 1; i < CacheSettings.DB_CONCURRENCY; i++) {
+			update("PROJ-" + i);
+		}
+		assertTrue("Updates of the other plans should start", otherPlansLoading.await(5, TimeUnit.SECONDS));
+
+		// the patch of plan A is handed to the worker updating plan A
+		cacheManager.requestJobCompletedUpdate("PROJ-A", "PROJ-A-JOB1", 1);
+		waitForUpdateQueue();
+		releasePlanA.countDown();
+
+		// the patch of a completed job runs in a transaction of its own, under a permit
+		assertTrue("Patch should run while the other permits are held", transactions.await(5, TimeUnit.SECONDS));
+		releaseOtherPlans.countDown();
+	}
+
+	@Test
+	public void testHandedOffRefreshIsCountedOnceItRuns() throws InterruptedException {
+		final CountDownLatch planALoading = new CountDownLatch(1);
+		final CountDownLatch releasePlanA = new CountDownLatch(1);
+		final AtomicInteger planALoads = new AtomicInteger();
+		when(planService.getPlanStatistics("PROJ-A")).thenAnswer(new Answer<PlanStatistics>() {
+
+			@Override
+			public PlanStatistics answer(InvocationOnMock invocation) throws InterruptedException {
+				if (planALoads.getAndIncrement() == 0) {
+					planALoading.countDown();
+					releasePlanA.await();
+				}
+				return null;
+			}
+		});
+		TopLevelPlan plan = mock(TopLevelPlan.class);
+		PlanKey planKey = mock(PlanKey.class);
+		when(planKey.getKey()).thenReturn("PROJ-A");
+		when(plan.getPlanKey()).thenReturn(planKey);
+		when(planService.getAllPlans()).thenReturn(Arrays.asList(plan));
+
+		// the update of plan A holds plan A, so its refresh is handed to that update
+		update("PROJ-A");
+		assertTrue("Update of plan A should start", planALoading.await(5, TimeUnit.SECONDS));
+		Thread refresh = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				cacheManager.putAllWallBoardData();
+			}
+		});
+		threads.add(refresh);
+		refresh.start();
+		refresh.join(5000);
+		assertEquals("Refresh should return once plan A is handed over", false, refresh.isAlive());
+		assertEquals("Plan A shouldn't count before its refresh runs", 0, cacheManager.getLoadedPlanCount());
+
+		releasePlanA.countDown();
+		for (int i = 0; i < 500 && cacheManager.getLoadedPlanCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals("Plan A should count once its refresh has run", 1, cacheManager.getLoadedPlanCount());
+		assertEquals("Plan A should be loaded by the update and by the refresh", 2, planALoads.get());
+	}
+
+	// Update the given plan on a thread of its own.
+	private void update(final String planKey) {
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				cacheManager.updateWallBoardDataForPlan(planKey, false);
+			}
+		});
+		threads.add(thread);
+		thread.start();
+	}
+
+	// Wait for the update workers to take the requested updates, and hand them over.
+	private void waitForUpdateQueue() throws InterruptedException {
+		for (int i = 0; i < 500 && cacheManager.getUpdateQueueDepth() > 0; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(200);
+	}
+}
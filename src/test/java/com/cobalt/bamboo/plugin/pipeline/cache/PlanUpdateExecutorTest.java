@@ -0,0 +1,71 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlanUpdateExecutorTest {
+
+	@Test
+	public void testFullLaneFoldsUpdatesWithoutWaiting() throws InterruptedException {
+		final List<String> fullUpdates = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch done = new CountDownLatch(1);
+		PlanUpdateExecutor executor = new PlanUpdateExecutor(new PlanUpdateExecutor.UpdateHandler() {
+
+			@Override
+			public void update(String planKey, boolean updateUptimeGrade) {
+				fullUpdates.add(planKey + ":" + updateUptimeGrade);
+				done.countDown();
+			}
+		}, 1, 1);
+
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+		executor.execute("PROJ-A", false, new Runnable() {
+
+			@Override
+			public void run() {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		assertTrue("Worker should start the first update", blocked.await(5, TimeUnit.SECONDS));
+
+		executor.execute("PROJ-A", false, record(ran, "queued"));
+		// the lane is full from here on, none of these may wait
+		executor.execute("PROJ-A", false, record(ran, "patch"));
+		executor.execute("PROJ-A", true, record(ran, "completion"));
+		executor.execute("PROJ-A", false, record(ran, "patch"));
+		assertEquals("Updates should be folded", 3, executor.getMergedCount());
+
+		release.countDown();
+		assertTrue("Folded updates should run", done.await(5, TimeUnit.SECONDS));
+		executor.shutdown();
+
+		assertEquals("Queued update should run first", Collections.singletonList("queued"), ran);
+		assertEquals("Folded updates should run as one full update with the UptimeGrade",
+				Collections.singletonList("PROJ-A:true"), fullUpdates);
+	}
+
+	private static Runnable record(final List<String> ran, final String name) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				ran.add(name);
+			}
+		};
+	}
+}
@@ -0,0 +1,168 @@
+package com.cobalt.bamboo.plugin.pipeline.cache;
+
+import com.cobalt.bamboo.plugin.pipeline.domain.model.Build;
+import com.cobalt.bamboo.plugin.pipeline.domain.model.ProjectReport;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WallBoardCacheTest {
+	private static final int NUM_WRITERS = 4;
+	private static final int PLANS_PER_WRITER = 5;
+	private static final int UPDATES_PER_PLAN = 2000;
+
+	@Test
+	public void testDeltasDontLoseConcurrentChanges() throws InterruptedException {
+		final WallBoardCache cache = new WallBoardCache();
+		final AtomicBoolean failed = new AtomicBoolean();
+		Thread[] writers = new Thread[NUM_WRITERS];
+		for (int w = 0; w < NUM_WRITERS; w++) {
+			final int writer = w;
+			writers[w] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < UPDATES_PER_PLAN; i++) {
+							for (int p = 0; p < PLANS_PER_WRITER; p++) {
+								String planKey = "PROJ-W" + writer + "P" + p;
+								cache.put(planKey, new WallBoardData(planKey, null, null, null, null));
+							}
+						}
+					} catch (RuntimeException e) {
+						failed.set(true);
+					}
+				}
+			});
+		}
+
+		// a client polling for deltas while the writers run
+		Map<String, WallBoardData> client = new HashMap<String, WallBoardData>();
+		long since = applyDelta(client, cache.getChangesSince(0));
+		for (Thread writer : writers) {
+			writer.start();
+		}
+		boolean running = true;
+		while (running) {
+			running = false;
+			for (Thread writer : writers) {
+				running |= writer.isAlive();
+			}
+			since = applyDelta(client, cache.getChangesSince(since));
+		}
+		since = applyDelta(client, cache.getChangesSince(since));
+
+		assertTrue("Writers shouldn't fail", !failed.get());
+		assertEquals("Client should have every plan", NUM_WRITERS * PLANS_PER_WRITER, client.size());
+		for (String planKey : cache.getAllPlanKeys()) {
+			assertSame("Client should have the latest data of " + planKey, cache.get(planKey), client.get(planKey));
+		}
+	}
+
+	@Test
+	public void testDeltaAfterRemoval() {
+		WallBoardCache cache = new WallBoardCache();
+		cache.put("PROJ-A", new WallBoardData("PROJ-A", null, null, null, null));
+		cache.put("PROJ-B", new WallBoardData("PROJ-B", null, null, null, null));
+		long since = cache.getVersion();
+
+		cache.removePlan("PROJ-A");
+		WallBoardDelta delta = cache.getChangesSince(since);
+		assertTrue("Delta shouldn't be full", !delta.isFull());
+		assertEquals("Delta should only hold the removal", 0, delta.getChanged().size());
+		assertEquals("Delta should hold the removed plan", "PROJ-A", delta.getRemoved().get(0));
+		assertEquals("Delta should be up to the current version", cache.getVersion(), delta.getVersion());
+	}
+
+	@Test
+	public void testIsOlderThan() {
+		WallBoardData build5 = getWallBoardData("PROJ-A", 5, 1000, 2000);
+		WallBoardData build6 = getWallBoardData("PROJ-A", 6, 500, 0);
+		assertTrue("An older build is older", build5.isOlderThan(build6));
+		assertTrue("A newer build isn't older", !build6.isOlderThan(build5));
+
+		WallBoardData running = getWallBoardData("PROJ-A", 6, 500, 0);
+		WallBoardData completed = getWallBoardData("PROJ-A", 6, 500, 900);
+		assertTrue("The same build before it completed is older", running.isOlderThan(completed));
+
+		WallBoardData rerun = getWallBoardData("PROJ-A", 6, 1500, 0);
+		assertTrue("The same build before its last change is older", completed.isOlderThan(rerun));
+		assertTrue("Data isn't older than itself", !completed.isOlderThan(completed));
+	}
+
+	@Test
+	public void testPutIfNewerKeepsNewerBuild() {
+		WallBoardCache cache = new WallBoardCache();
+		WallBoardData build6 = getWallBoardData("PROJ-A", 6, 500, 900);
+		assertTrue("Data of a new plan should be put", cache.putIfNewer("PROJ-A", build6));
+
+		assertTrue("Data of an older build should be discarded",
+				!cache.putIfNewer("PROJ-A", getWallBoardData("PROJ-A", 5, 1000, 2000)));
+		assertSame("Newer data should be kept", build6, cache.get("PROJ-A"));
+
+		WallBoardData build7 = getWallBoardData("PROJ-A", 7, 1000, 0);
+		assertTrue("Data of a newer build should be put", cache.putIfNewer("PROJ-A", build7));
+		assertSame("Newer data should replace older data", build7, cache.get("PROJ-A"));
+	}
+
+	@Test
+	public void testPutReplacesNewerBuild() {
+		WallBoardCache cache = new WallBoardCache();
+		cache.put("PROJ-A", getWallBoardData("PROJ-A", 40, 1000, 2000));
+
+		// the plan was recreated, its history starts over
+		WallBoardData reloaded = getWallBoardData("PROJ-A", 1, 3000, 3000);
+		cache.put("PROJ-A", reloaded);
+		assertSame("A full load should replace any data", reloaded, cache.get("PROJ-A"));
+		assertTrue("Restored data shouldn't replace loaded data",
+				!cache.putIfAbsent("PROJ-A", getWallBoardData("PROJ-A", 40, 1000, 2000)));
+	}
+
+	@Test
+	public void testReplaceOnlyAppliesToExpectedData() {
+		WallBoardCache cache = new WallBoardCache();
+		WallBoardData cached = getWallBoardData("PROJ-A", 6, 500, 0);
+		cache.put("PROJ-A", cached);
+		WallBoardData patch = getWallBoardData("PROJ-A", 6, 500, 0);
+
+		// a full update lands between the read and the patch
+		WallBoardData updated = getWallBoardData("PROJ-A", 6, 500, 0);
+		cache.put("PROJ-A", updated);
+		assertTrue("Patch of older data shouldn't be put", !cache.replace("PROJ-A", cached, patch));
+		assertSame("Full update should be kept", updated, cache.get("PROJ-A"));
+
+		assertTrue("Patch of the current data should be put", cache.replace("PROJ-A", updated, patch));
+		assertSame("Patch should be put", patch, cache.get("PROJ-A"));
+	}
+
+	private static WallBoardData getWallBoardData(String planKey, int buildNumber, long lastUpdate, long completed) {
+		Build build = mock(Build.class);
+		when(build.getBuildNumber()).thenReturn(buildNumber);
+		when(build.getBuildCompletedDate()).thenReturn(completed > 0 ? new Date(completed) : null);
+		ProjectReport report = mock(ProjectReport.class);
+		when(report.getCurrentBuild()).thenReturn(build);
+		when(report.getLastUpdateTime()).thenReturn(new Date(lastUpdate));
+		return new WallBoardData(planKey, report, null, null, null);
+	}
+
+	private static long applyDelta(Map<String, WallBoardData> client, WallBoardDelta delta) {
+		if (delta.isFull()) {
+			client.clear();
+		}
+		for (WallBoardData data : delta.getChanged()) {
+			client.put(data.planKey, data);
+		}
+		for (String planKey : delta.getRemoved()) {
+			client.remove(planKey);
+		}
+		return delta.getVersion();
+	}
+}
@@ -0,0 +1,152 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.commit.Commit;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BuildHistoryIndexTest {
+	private static final long HOUR = 60 * 60 * 1000L;
+	private static final long DAY = 24 * HOUR;
+
+	@Test
+	public void testQueriesMatchBuilds() {
+		long now = System.currentTimeMillis();
+		// newest first, build 100 still running
+		List<ResultsSummary> history = new ArrayList<ResultsSummary>();
+		BuildHistoryIndex index = new BuildHistoryIndex();
+		for (int i = 100; i > 0; i--) {
+			Date completed = i == 100 ? null : new Date(now - (100 - i) * DAY);
+			ResultsSummary build = getBuild(i % 3 != 0, i % 5 == 0, i, completed);
+			history.add(build);
+			assertTrue("Older builds should still be needed", index.addOlderBuild(build));
+		}
+
+		assertEquals("Only completed builds should be indexed", 99, index.size());
+		assertEquals("Last build number isn't as expected", 99, index.getLastBuildNumber());
+		long from = now - 30 * DAY;
+		int deployments = 0;
+		for (ResultsSummary build : history) {
+			Date completed = build.getBuildCompletedDate();
+			if (completed != null && completed.getTime() >= from && completed.getTime() < now) {
+				deployments += ChangeListFactory.isCompletion(build) ? 1 : 0;
+			}
+		}
+		assertEquals("Deployments in the window aren't as expected", deployments,
+				index.countDeploymentsBetween(from, now));
+		assertEquals("Empty window should have no deployments", 0, index.countDeploymentsBetween(now, from));
+	}
+
+	@Test
+	public void testAddBuildsOutOfOrder() {
+		long now = System.currentTimeMillis();
+		BuildHistoryIndex index = new BuildHistoryIndex();
+		assertEquals("Empty index shouldn't have a deployment", 0, index.countDeploymentsBetween(0, now + 1));
+
+		assertTrue("Build 1 should be added", index.addBuild(getBuild(true, false, 1, new Date(now - 3 * DAY))));
+		assertTrue("Build 3 should be added", index.addBuild(getBuild(false, false, 3, new Date(now - DAY))));
+		// build 2 completes after build 3
+		assertTrue("Build 2 should be added", index.addBuild(getBuild(true, false, 2, new Date(now))));
+		assertFalse("Build 2 shouldn't be added twice", index.addBuild(getBuild(true, false, 2, new Date(now))));
+		assertFalse("Running build shouldn't be added", index.addBuild(getBuild(true, false, 4, null)));
+
+		assertEquals("Every completed build should be indexed once", 3, index.size());
+		assertEquals("Last build number isn't as expected", 3, index.getLastBuildNumber());
+		assertEquals("Deployments of the last two days aren't as expected", 1,
+				index.countDeploymentsBetween(now - 2 * DAY, now + 1));
+	}
+
+	@Test
+	public void testBuildCompletedAgainReplacesItsRow() {
+		long now = System.currentTimeMillis();
+		BuildHistoryIndex index = new BuildHistoryIndex();
+		index.addBuild(getBuild(true, false, 1, new Date(now - 3 * DAY)));
+		// build 2 waits at a manual stage, then its manual stage is run
+		index.addBuild(getBuild(true, true, 2, new Date(now - 2 * DAY)));
+		index.addBuild(getBuild(false, false, 3, new Date(now - DAY)));
+		assertTrue("Continued build should replace its row", index.addBuild(getBuild(true, false, 2, new Date(now))));
+		// build 3 is rerun and fails again at the same time
+		assertFalse("Unchanged build shouldn't be added again", index.addBuild(getBuild(false, false, 3, new Date(now - DAY))));
+
+		assertEquals("Every build should be indexed once", 3, index.size());
+		assertEquals("Continued build should count as a deployment", 2,
+				index.countDeploymentsBetween(now - 4 * DAY, now + 1));
+		assertEquals("Continued build should be indexed at its new time", 1,
+				index.countDeploymentsBetween(now - DAY, now + 1));
+		// build 3 now follows the deployment of build 1, and build 2 is the last build
+		assertEquals("Failure rate should see the builds in their new order", 1.0,
+				index.getChangeFailureRate(10), 0.001);
+	}
+
+	@Test
+	public void testLoadStopsOnceFull() {
+		long now = System.currentTimeMillis();
+		BuildHistoryIndex index = new BuildHistoryIndex();
+		for (int i = BuildHistoryIndex.CAPACITY; i > 0; i--) {
+			assertTrue("Builds should be taken until the index is full",
+					index.addOlderBuild(getBuild(true, false, i, new Date(now - (BuildHistoryIndex.CAPACITY - i) * DAY))));
+		}
+		assertFalse("No build should be taken once the index is full", index.addOlderBuild(getBuild(true, false, 0, new Date(0))));
+		assertEquals("Index should hold as many builds as it can", BuildHistoryIndex.CAPACITY, index.size());
+
+		// a newer build drops the oldest ones
+		assertTrue("Newer build should be added", index.addBuild(getBuild(false, false, BuildHistoryIndex.CAPACITY + 1, new Date(now + DAY))));
+		assertEquals("Oldest quarter should be dropped", BuildHistoryIndex.CAPACITY - BuildHistoryIndex.CAPACITY / 4 + 1,
+				index.size());
+		assertEquals("Last build number isn't as expected", BuildHistoryIndex.CAPACITY + 1, index.getLastBuildNumber());
+		assertEquals("Newest deployment should still be indexed", 1, index.countDeploymentsBetween(now, now + 1));
+		assertEquals("Oldest deployments should be dropped", 0, index.countDeploymentsBetween(0,
+				now - (BuildHistoryIndex.CAPACITY - BuildHistoryIndex.CAPACITY / 4 - 1) * DAY));
+		assertEquals("Newer build should follow the last deployment", 1.0 / (index.size() - 1), index.getChangeFailureRate(index.size()), 0.0001);
+	}
+
+	@Test
+	public void testLeadTimeLeavesOutDeploymentsPastOldestBuild() {
+		long now = System.currentTimeMillis();
+		BuildHistoryIndex index = new BuildHistoryIndex();
+		// deployment 3 ships the commits of builds 3 and 2, 2 and 4 hours before it
+		index.addOlderBuild(getBuild(true, false, 3, new Date(now), now - 2 * HOUR));
+		index.addOlderBuild(getBuild(false, false, 2, new Date(now - HOUR), now - 4 * HOUR));
+		// deployment 1 ships a commit 1 hour before it
+		index.addOlderBuild(getBuild(true, false, 1, new Date(now - 2 * HOUR), now - 3 * HOUR));
+		assertEquals("Lead time should cover both deployments", 7 * HOUR / 3, index.getAverageLeadTime(10));
+		assertEquals("Lead time should cover the last deployment only", 3 * HOUR, index.getAverageLeadTime(1));
+
+		// the builds before deployment 1 are unknown once the history is cut off
+		BuildHistoryIndex full = new BuildHistoryIndex();
+		for (int i = BuildHistoryIndex.CAPACITY + 1; i > 0; i--) {
+			full.addOlderBuild(getBuild(i % 2 == 0, false, i, new Date(now - (BuildHistoryIndex.CAPACITY + 1 - i) * HOUR),
+					now - (BuildHistoryIndex.CAPACITY + 2 - i) * HOUR));
+		}
+		// every other deployment ships a commit 1 hour and one 2 hours before it
+		assertEquals("Deployment past the oldest build shouldn't count", 3 * HOUR / 2,
+				full.getAverageLeadTime(BuildHistoryIndex.CAPACITY));
+	}
+
+	private ChainResultsSummary getBuild(boolean successful, boolean continuable, int buildNumber, Date completedDate,
+			long... commitTimes) {
+		ChainResultsSummary result = mock(ChainResultsSummary.class);
+		when(result.isSuccessful()).thenReturn(successful);
+		when(result.isContinuable()).thenReturn(continuable);
+		when(result.getBuildNumber()).thenReturn(buildNumber);
+		when(result.getBuildCompletedDate()).thenReturn(completedDate);
+		List<Commit> commits = new ArrayList<Commit>();
+		for (long commitTime : commitTimes) {
+			Commit commit = mock(Commit.class);
+			when(commit.getDate()).thenReturn(new Date(commitTime));
+			commits.add(commit);
+		}
+		when(result.getCommits()).thenReturn(commits);
+		return result;
+	}
+}
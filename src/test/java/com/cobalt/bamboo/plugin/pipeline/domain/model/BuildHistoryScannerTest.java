@@ -0,0 +1,158 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.author.Author;
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.commit.Commit;
+import com.atlassian.bamboo.plan.Plan;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import com.atlassian.bamboo.resultsummary.ResultsSummaryManager;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BuildHistoryScannerTest {
+	private ContributorBuilder cb;
+	private Plan plan;
+	private ResultsSummaryManager rsm;
+	// newest first
+	private List<ResultsSummary> history;
+
+	@Before
+	public void setup() {
+		cb = new ContributorBuilder(null);
+		plan = mock(Plan.class);
+		rsm = mock(ResultsSummaryManager.class);
+
+		Date[] days = new Date[6];
+		for (int i = 0; i < days.length; i++) {
+			days[i] = new Date();
+			days[i].setDate(days[i].getDate() - days.length + i);
+		}
+		history = new ArrayList<ResultsSummary>();
+		history.add(getChainResultsSummary(true, true, "carol", 6, days[5]));
+		history.add(getChainResultsSummary(false, false, "alice", 5, days[4]));
+		history.add(getChainResultsSummary(false, true, "bob", 4, days[3]));
+		history.add(getChainResultsSummary(true, true, "alice", 3, days[2]));
+		history.add(getChainResultsSummary(false, true, "bob", 2, days[1]));
+		history.add(getChainResultsSummary(true, false, "alice", 1, days[0]));
+
+		when(rsm.getResultSummariesForPlan(plan, 0, 4)).thenReturn(history.subList(0, 4));
+		when(rsm.getResultSummariesForPlan(plan, 4, 4)).thenReturn(history.subList(4, 6));
+	}
+
+	@Test
+	public void testOnePassFeedsAllAggregators() {
+		BuildsSinceLastCompletion recentBuilds = new BuildsSinceLastCompletion();
+		UptimeGradeAccumulator uptime = new UptimeGradeAccumulator();
+		PerformanceAccumulator performance = new PerformanceAccumulator(cb);
+
+		int numRead = new BuildHistoryScanner(rsm, 4).scan(plan, recentBuilds, uptime, performance);
+
+		assertEquals("Every build should be read once", 6, numRead);
+		verify(rsm, times(1)).getResultSummariesForPlan(plan, 0, 4);
+		verify(rsm, times(1)).getResultSummariesForPlan(plan, 4, 4);
+
+		assertEquals("Recent builds should go back to the last completion", 3, recentBuilds.getBuilds().size());
+
+		UptimeGradeAccumulator uptimeOfHistory = new UptimeGradeAccumulator();
+		for (ResultsSummary build : history) {
+			uptimeOfHistory.addOlderBuild(build);
+		}
+		UptimeGrade expectedGrade = uptimeOfHistory.getUptimeGrade();
+		assertEquals("Uptime doesn't match the whole history", expectedGrade.getUptimePercentage(),
+				uptime.getUptimeGrade().getUptimePercentage(), 0.001);
+
+		PerformanceAccumulator performanceOfHistory = new PerformanceAccumulator(cb);
+		for (int i = history.size() - 1; i >= 0; i--) {
+			performanceOfHistory.addBuild((ChainResultsSummary) history.get(i));
+		}
+		PerformanceSummary expected = performanceOfHistory.getSummary();
+		PerformanceSummary actual = performance.getSummary();
+		assertEquals("Success percentage doesn't match the whole history",
+				expected.getSuccessPercentage(), actual.getSuccessPercentage(), 0.0001);
+		assertEquals("Average changes don't match the whole history",
+				expected.getAverageChanges(), actual.getAverageChanges(), 0.0001);
+		assertEquals("Average frequency doesn't match the whole history",
+				expected.getAverageFrequency(), actual.getAverageFrequency(), 0.0001);
+		assertEquals("Number of completions doesn't match the whole history",
+				expected.getCompletions().size(), actual.getCompletions().size());
+		for (int i = 0; i < expected.getCompletions().size(); i++) {
+			assertEquals("Changes of completion " + i + " don't match the whole history",
+					expected.getCompletions().get(i).getNumChanges(), actual.getCompletions().get(i).getNumChanges());
+		}
+		assertEquals("Last build number isn't as expected", 6, performance.getLastBuildNumber());
+	}
+
+	@Test
+	public void testStopsOnceAggregatorsAreDone() {
+		BuildsSinceLastCompletion recentBuilds = new BuildsSinceLastCompletion();
+
+		new BuildHistoryScanner(rsm, 4).scan(plan, recentBuilds);
+
+		assertEquals("Recent builds should go back to the last completion", 3, recentBuilds.getBuilds().size());
+		verify(rsm, never()).getResultSummariesForPlan(plan, 4, 4);
+	}
+
+	@Test
+	public void testSkipsBuildsShiftedBetweenPages() {
+		// a new build pushed build 3 onto the second page as well
+		when(rsm.getResultSummariesForPlan(plan, 4, 4)).thenReturn(history.subList(3, 6));
+		UptimeGradeAccumulator uptime = new UptimeGradeAccumulator();
+
+		int numRead = new BuildHistoryScanner(rsm, 4).scan(plan, uptime);
+
+		assertEquals("Build 3 should only be read once", 6, numRead);
+	}
+
+	@Test
+	public void testPagesGrowGeometrically() {
+		when(rsm.getResultSummariesForPlan(plan, 0, 1)).thenReturn(history.subList(0, 1));
+		when(rsm.getResultSummariesForPlan(plan, 1, 2)).thenReturn(history.subList(1, 3));
+		when(rsm.getResultSummariesForPlan(plan, 3, 4)).thenReturn(history.subList(3, 6));
+		UptimeGradeAccumulator uptime = new UptimeGradeAccumulator();
+
+		int numRead = new BuildHistoryScanner(rsm, 1, 8).scan(plan, uptime);
+
+		assertEquals("Every build should be read once", 6, numRead);
+		verify(rsm, times(1)).getResultSummariesForPlan(plan, 0, 1);
+		verify(rsm, times(1)).getResultSummariesForPlan(plan, 1, 2);
+		verify(rsm, times(1)).getResultSummariesForPlan(plan, 3, 4);
+	}
+
+	@Test
+	public void testStopsAtHorizon() {
+		BuildsSinceLastCompletion recentBuilds = new BuildsSinceLastCompletion(2);
+
+		new BuildHistoryScanner(rsm, 4).scan(plan, recentBuilds);
+
+		assertEquals("Recent builds should stop at the horizon", 2, recentBuilds.getBuilds().size());
+	}
+
+	private ChainResultsSummary getChainResultsSummary(boolean cont, boolean succ, String name, int buildNumber, Date date) {
+		ChainResultsSummary result = mock(ChainResultsSummary.class);
+		when(result.isContinuable()).thenReturn(cont);
+		when(result.isSuccessful()).thenReturn(succ);
+		Commit c = mock(Commit.class);
+		Author a = mock(Author.class);
+		when(a.getLinkedUserName()).thenReturn(name);
+		when(a.getName()).thenReturn(name);
+		when(c.getAuthor()).thenReturn(a);
+		when(c.getDate()).thenReturn(date);
+		ImmutableList<Commit> commits = ImmutableList.of(c);
+		when(result.getCommits()).thenReturn(commits);
+		when(result.getBuildCompletedDate()).thenReturn(date);
+		when(result.getBuildNumber()).thenReturn(buildNumber);
+		return result;
+	}
+}
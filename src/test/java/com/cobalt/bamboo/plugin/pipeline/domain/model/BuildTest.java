@@ -0,0 +1,52 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.progressbar.ProgressBar;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+
+public class BuildTest {
+
+	@Test
+	public void testBuildResultIsNotReadAfterConstruction() {
+		Date completed = new Date(5000);
+		ChainResultsSummary chain = mock(ChainResultsSummary.class);
+		when(chain.getBuildResultKey()).thenReturn("PROJ-PLAN-3");
+		when(chain.getBuildNumber()).thenReturn(3);
+		when(chain.getBuildCompletedDate()).thenReturn(completed);
+		when(chain.isSuccessful()).thenReturn(true);
+
+		Build build = new Build(chain, null);
+		// reading the build may not go back to the build result
+		reset(chain);
+
+		assertEquals("Build key should match", "PROJ-PLAN-3", build.getBuildKey());
+		assertEquals("Build number should match", 3, build.getBuildNumber());
+		assertEquals("State should match", PipelineState.CD_SUCCESS, build.getCDPipelineState());
+		assertEquals("Completed date should match", completed, build.getBuildCompletedDate());
+		verifyZeroInteractions(chain);
+	}
+
+	@Test
+	public void testQueuedBuildShowsLiveProgress() {
+		ChainResultsSummary chain = mock(ChainResultsSummary.class);
+		when(chain.isQueued()).thenReturn(true);
+		ProgressBar progressBar = mock(ProgressBar.class);
+		when(progressBar.getPercentageCompleted()).thenReturn(0.0);
+
+		Build build = new Build(chain, progressBar);
+		assertEquals("State should be queued", PipelineState.CD_QUEUED, build.getCDPipelineState());
+
+		when(progressBar.getPercentageCompleted()).thenReturn(0.5);
+		assertEquals("State should follow the progress", PipelineState.CD_IN_PROGRESS, build.getCDPipelineState());
+		assertEquals("Completed date should be null", null, build.getBuildCompletedDate());
+	}
+}
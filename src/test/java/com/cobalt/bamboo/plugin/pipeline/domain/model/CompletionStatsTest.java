@@ -7,6 +7,8 @@ import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 
 public class CompletionStatsTest {
@@ -60,6 +62,31 @@ public class CompletionStatsTest {
 		}
 	}
 	
+	@Test
+	public void updateContributorInPlaceTest(){
+		CompletionStats stat = new CompletionStats(0, current);
+		stat.addContributor(test1);
+		stat.updateContributor("test 1", current);
+		assertSame("Contributor should be updated in place", test1, stat.getContributorsSortedByLatestCommit().get(0));
+	}
+	
+	@Test
+	public void addAllCopiesContributorsTest(){
+		CompletionStats stat = new CompletionStats(0, current);
+		stat.addContributor(test1);
+		CompletionStats other = new CompletionStats(1, current);
+		other.addContributor(new Contributor("test 1", current, null, null, null));
+		other.addContributor(test2);
+		stat.addAll(other);
+		other.updateContributor("test 2", current);
+		
+		List<Contributor> contributors = stat.getContributorsSortedByLatestCommit();
+		assertEquals("Both Contributors should be in the list", 2, contributors.size());
+		assertEquals("Commits of the same Contributor should be added up", 2, contributors.get(0).getCommitCount());
+		assertNotSame("Contributor shouldn't be shared with the other completion", test2, contributors.get(1));
+		assertEquals("Updating the other completion shouldn't change this one", 1, contributors.get(1).getCommitCount());
+	}
+	
 	@Test
 	public void lastCommitTimeSortingTestOfContributors(){
 		CompletionStats stat = new CompletionStats(0, current);		
@@ -0,0 +1,62 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ContributorBuilderTest {
+	private ContributorBuilder cb;
+
+	@Before
+	public void setup() {
+		cb = new ContributorBuilder(null);
+	}
+
+	@Test
+	public void testIdentitySharedByContributors() {
+		Contributor first = cb.createContributor("alice", new Date(1000), "Alice A");
+		Contributor second = cb.createContributor("alice", new Date(2000), "Alice A");
+
+		assertSame("Contributors of the same user should share their profile", first.getIdentity(), second.getIdentity());
+		assertEquals("Full name isn't as expected", "Alice A", second.getFullname());
+		assertEquals("Picture url should come from the profile", first.getPictureUrl(),
+				cb.getIdentity("alice", "Alice A").getPictureUrl());
+		assertEquals("Commit counts should be kept apart", 1, second.getCommitCount());
+	}
+
+	@Test
+	public void testFullNameRefreshed() {
+		ContributorIdentity before = cb.getIdentity("bob", "Bob B");
+		ContributorIdentity unknown = cb.getIdentity("bob", null);
+		ContributorIdentity after = cb.getIdentity("bob", "Robert B");
+
+		assertSame("Profile should be kept when no full name is given", before, unknown);
+		assertEquals("Full name should be refreshed", "Robert B", after.getFullname());
+		assertEquals("Picture url should be kept", before.getPictureUrl(), after.getPictureUrl());
+		assertSame("Refreshed profile should be kept", after, cb.getIdentity("bob", "Robert B"));
+	}
+
+	@Test
+	public void testIdentityCacheBounded() {
+		ContributorIdentity first = cb.getIdentity("user0", null);
+		ContributorIdentity second = cb.getIdentity("user1", null);
+		for (int i = 2; i < ContributorBuilder.IDENTITY_CACHE_SIZE; i++) {
+			cb.getIdentity("user" + i, null);
+		}
+		// used again, so user1 becomes the least recently used
+		cb.getIdentity("user0", null);
+		ContributorIdentity last = cb.getIdentity("user" + ContributorBuilder.IDENTITY_CACHE_SIZE, null);
+
+		assertEquals("Number of cached profiles should stay bounded", ContributorBuilder.IDENTITY_CACHE_SIZE,
+				cb.getIdentityCount());
+		assertSame("Profile just added should be kept", last,
+				cb.getIdentity("user" + ContributorBuilder.IDENTITY_CACHE_SIZE, null));
+		assertSame("Recently used profile should be kept", first, cb.getIdentity("user0", null));
+		assertNotSame("Least recently used profile should be evicted", second, cb.getIdentity("user1", null));
+	}
+}
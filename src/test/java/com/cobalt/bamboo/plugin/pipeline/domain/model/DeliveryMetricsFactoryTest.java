@@ -0,0 +1,109 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.commit.Commit;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DeliveryMetricsFactoryTest {
+	private static final long HOUR = 60 * 60 * 1000L;
+	private static final long DAY = 24 * HOUR;
+
+	private long now;
+
+	@Before
+	public void setup() {
+		now = System.currentTimeMillis();
+	}
+
+	@Test
+	public void testNoDeployment() {
+		DeliveryMetrics metrics = DeliveryMetricsFactory.createDeliveryMetrics(new BuildHistoryIndex(), now);
+
+		assertEquals("There should be no deployment", 0, metrics.getNumDeployments());
+		assertEquals("Frequency should be 0", 0, metrics.getDeploymentsPerDay(), 0.001);
+		assertEquals("Lead time should be -1", -1, metrics.getLeadTimeHours(), 0.001);
+		assertEquals("Change failure rate should be -1", -1, metrics.getChangeFailureRate(), 0.001);
+		assertEquals("Time to restore should be -1", -1, metrics.getTimeToRestoreHours(), 0.001);
+	}
+
+	@Test
+	public void testMetricsOfDeployments() {
+		long start = now - 10 * DAY;
+		List<ChainResultsSummary> builds = new ArrayList<ChainResultsSummary>();
+		// build 1 continuable, commits 2 and 1 hours before the deployment of build 2
+		builds.add(getBuild(1, start, true, true, start - HOUR, start));
+		builds.add(getBuild(2, start + HOUR, true, false));
+		// deployment 2 followed by a failure, restored 3 hours later
+		builds.add(getBuild(3, start + 2 * HOUR, false, true, start + HOUR));
+		builds.add(getBuild(4, start + 5 * HOUR, true, false));
+		// deployment 4 followed by a successful build
+		builds.add(getBuild(5, start + 6 * HOUR, true, true));
+		// deployment 6 without an outcome yet
+		builds.add(getBuild(6, now - HOUR, true, false));
+
+		BuildHistoryIndex index = new BuildHistoryIndex();
+		for (ChainResultsSummary build : builds) {
+			index.addBuild(build);
+		}
+		DeliveryMetrics metrics = DeliveryMetricsFactory.createDeliveryMetrics(index, now);
+
+		assertEquals("Number of deployments isn't as expected", 3, metrics.getNumDeployments());
+		assertEquals("Frequency isn't as expected", 3.0 / 30, metrics.getDeploymentsPerDay(), 0.01);
+		// lead times: 2h and 1h for deployment 2, 4h for deployment 4
+		assertEquals("Lead time isn't as expected", 7.0 / 3, metrics.getLeadTimeHours(), 0.01);
+		assertEquals("Change failure rate isn't as expected", 0.5, metrics.getChangeFailureRate(), 0.001);
+		assertEquals("Time to restore isn't as expected", 3, metrics.getTimeToRestoreHours(), 0.001);
+	}
+
+	@Test
+	public void testDeploymentThroughManualStageIsCounted() {
+		List<ResultsSummary> latestBuilds = new ArrayList<ResultsSummary>();
+		latestBuilds.add(getBuild(2, now - DAY, true, true, now - 2 * DAY));
+		latestBuilds.add(getBuild(1, now - 3 * DAY, true, false));
+		BuildHistoryIndex index = new BuildHistoryIndex();
+		for (ResultsSummary build : latestBuilds) {
+			index.addBuild(build);
+		}
+		assertEquals("Build waiting at its manual stage isn't a deployment yet", 1,
+				DeliveryMetricsFactory.createDeliveryMetrics(index, now).getNumDeployments());
+
+		// the manual stage of build 2 is run
+		latestBuilds.set(0, getBuild(2, now - HOUR, true, false, now - 2 * DAY));
+		for (ResultsSummary build : latestBuilds) {
+			index.addBuild(build);
+		}
+		DeliveryMetrics metrics = DeliveryMetricsFactory.createDeliveryMetrics(index, now);
+
+		assertEquals("Continued build should be a deployment", 2, metrics.getNumDeployments());
+		assertEquals("Frequency should count the continued build", 2.0 / 30, metrics.getDeploymentsPerDay(), 0.01);
+		assertEquals("Lead time should run to the end of the manual stage", 2 * 24 - 1, metrics.getLeadTimeHours(),
+				0.01);
+	}
+
+	private ChainResultsSummary getBuild(int buildNumber, long completedTime, boolean successful, boolean continuable,
+			long... commitTimes) {
+		ChainResultsSummary result = mock(ChainResultsSummary.class);
+		when(result.getBuildNumber()).thenReturn(buildNumber);
+		when(result.getBuildCompletedDate()).thenReturn(new Date(completedTime));
+		when(result.isSuccessful()).thenReturn(successful);
+		when(result.isContinuable()).thenReturn(continuable);
+		List<Commit> commits = new ArrayList<Commit>();
+		for (long commitTime : commitTimes) {
+			Commit commit = mock(Commit.class);
+			when(commit.getDate()).thenReturn(new Date(commitTime));
+			commits.add(commit);
+		}
+		when(result.getCommits()).thenReturn(commits);
+		return result;
+	}
+}
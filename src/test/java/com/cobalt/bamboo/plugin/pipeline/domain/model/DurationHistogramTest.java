@@ -0,0 +1,184 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.chains.ChainStageResult;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DurationHistogramTest {
+
+	@Test
+	public void testBucketsCoverEveryValue() {
+		int lastBucket = -1;
+		for (long seconds = 0; seconds <= DurationHistogram.MAX_SECONDS; seconds += 1 + seconds / 64) {
+			int bucket = DurationHistogram.bucketOf(seconds);
+			assertTrue("Buckets should grow with the value", bucket >= lastBucket);
+			long highest = DurationHistogram.highestValueOf(bucket);
+			assertTrue(seconds + " should be within its bucket", seconds <= highest);
+			assertTrue(seconds + " should be within 12.5% of its bucket", highest - seconds <= seconds / 8);
+			lastBucket = bucket;
+		}
+		assertEquals("Last bucket isn't as expected", DurationHistogram.NUM_BUCKETS - 1,
+				DurationHistogram.bucketOf(DurationHistogram.MAX_SECONDS));
+	}
+
+	@Test
+	public void testPercentiles() {
+		DurationHistogram histogram = new DurationHistogram();
+		assertEquals("Empty histogram should have no percentile", -1, histogram.getP50());
+
+		for (int seconds = 1; seconds <= 100; seconds++) {
+			histogram.record(seconds * 1000L);
+		}
+
+		assertEquals("Count isn't as expected", 100, histogram.getCount());
+		assertEquals("Median isn't as expected", 50, histogram.getP50(), 50 / 8);
+		assertEquals("95th percentile isn't as expected", 95, histogram.getP95(), 95 / 8);
+		assertEquals("99th percentile isn't as expected", 99, histogram.getP99(), 99 / 8);
+		assertTrue("Percentile should round up", histogram.getP99() >= 99);
+	}
+
+	@Test
+	public void testMergeAndSnapshot() throws IOException {
+		DurationHistogram fast = new DurationHistogram();
+		DurationHistogram slow = new DurationHistogram();
+		for (int i = 0; i < 90; i++) {
+			fast.record(5000);
+		}
+		for (int i = 0; i < 10; i++) {
+			slow.record(3600 * 1000);
+		}
+
+		DurationHistogram merged = new DurationHistogram();
+		merged.merge(fast);
+		merged.merge(slow);
+
+		assertEquals("Merged count isn't as expected", 100, merged.getCount());
+		assertEquals("Median should come from the fast builds", 5, merged.getP50());
+		assertTrue("95th percentile should come from the slow builds", merged.getP95() >= 3600);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		merged.writeTo(new DataOutputStream(bytes));
+		DurationHistogram restored =
+				DurationHistogram.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals("Restored count isn't as expected", merged.getCount(), restored.getCount());
+		assertEquals("Restored percentile isn't as expected", merged.getP95(), restored.getP95());
+	}
+
+	@Test
+	public void testPlanDurationsRecordsBuildsOnce() {
+		PlanDurations durations = new PlanDurations();
+		ChainStageResult stage = mock(ChainStageResult.class);
+		when(stage.getName()).thenReturn("deploy");
+		when(stage.getProcessingDuration()).thenReturn(30 * 1000L);
+		// newest first, build 3 still running
+		durations.addOlderBuild(getBuild(3, null, 0, stage));
+		durations.addOlderBuild(getBuild(2, new Date(), 60 * 1000L, stage));
+		durations.addOlderBuild(getBuild(1, new Date(), 60 * 1000L, stage));
+
+		assertEquals("Completed builds should be recorded", 2, durations.getBuilds().getCount());
+		assertEquals("Stages should be recorded by name", 2, durations.getStages().get("deploy").getCount());
+
+		ProjectReport report = new ProjectReport("Project", "PROJ", "Plan", "PROJ-PLAN");
+		ChainResultsSummary running = getBuild(3, null, 0, stage);
+		report.setCurrentBuild(new Build(running, null));
+		assertEquals("Running build shouldn't be recorded", false, durations.record(report));
+
+		ChainResultsSummary completed = getBuild(3, new Date(), 90 * 1000L, stage);
+		report.setCurrentBuild(new Build(completed, null));
+		report.addPipelineStageToList(new PipelineStage(stage));
+		assertEquals("Completed build should be recorded", true, durations.record(report));
+		assertEquals("Completed build should only be recorded once", false, durations.record(report));
+
+		PlanDurations merged = new PlanDurations();
+		merged.merge(durations);
+		merged.merge(durations);
+		assertEquals("Merged builds aren't as expected", 6, merged.getBuilds().getCount());
+		assertEquals("Merged stages aren't as expected", 6, merged.getStages().get("deploy").getCount());
+	}
+
+	@Test
+	public void testPlanDurationsRecordsContinuedBuildAgain() throws IOException {
+		PlanDurations durations = new PlanDurations();
+		ChainStageResult build = getStage("build", 60 * 1000L);
+		ChainStageResult deploy = getStage("deploy", 0);
+		long now = System.currentTimeMillis();
+
+		// build 4 waits at its manual deploy stage
+		ProjectReport report = new ProjectReport("Project", "PROJ", "Plan", "PROJ-PLAN");
+		report.setCurrentBuild(new Build(getBuild(4, new Date(now - 60 * 1000L), 60 * 1000L, build), null));
+		report.addPipelineStageToList(new PipelineStage(build));
+		assertEquals("Paused build should be recorded", true, durations.record(report));
+
+		// the durations it was recorded with survive a restart
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		durations.writeTo(new DataOutputStream(bytes));
+		PlanDurations restored = PlanDurations.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		// its deploy stage is run
+		when(deploy.getProcessingDuration()).thenReturn(120 * 1000L);
+		ProjectReport continued = new ProjectReport("Project", "PROJ", "Plan", "PROJ-PLAN");
+		continued.setCurrentBuild(new Build(getBuild(4, new Date(now), 240 * 1000L, build), null));
+		continued.addPipelineStageToList(new PipelineStage(build));
+		continued.addPipelineStageToList(new PipelineStage(deploy));
+		for (PlanDurations planDurations : Arrays.asList(durations, restored)) {
+			assertEquals("Continued build should be recorded again", true, planDurations.record(continued));
+			assertEquals("Continued build should only be counted once", 1, planDurations.getBuilds().getCount());
+			assertEquals("Build should have its final duration", DurationHistogram.highestValueOf(
+					DurationHistogram.bucketOf(240)), planDurations.getBuilds().getP50());
+			assertEquals("Stage run before the pause should be counted once", 1,
+					planDurations.getStages().get("build").getCount());
+			assertEquals("Manual stage should be recorded", 1, planDurations.getStages().get("deploy").getCount());
+			assertEquals("Continued build should only be recorded again once", false,
+					planDurations.record(continued));
+		}
+	}
+
+	private ChainStageResult getStage(String name, long duration) {
+		ChainStageResult stage = mock(ChainStageResult.class);
+		when(stage.getName()).thenReturn(name);
+		when(stage.getProcessingDuration()).thenReturn(duration);
+		return stage;
+	}
+
+	private ChainResultsSummary getBuild(int buildNumber, Date completedDate, long duration, ChainStageResult stage) {
+		ChainResultsSummary result = mock(ChainResultsSummary.class);
+		when(result.getBuildNumber()).thenReturn(buildNumber);
+		when(result.getBuildCompletedDate()).thenReturn(completedDate);
+		when(result.isSuccessful()).thenReturn(completedDate != null);
+		when(result.getDuration()).thenReturn(duration);
+		when(result.getStageResults()).thenReturn(Arrays.asList(stage));
+		return result;
+	}
+
+	@Test
+	public void testPlanDurationsRecordIntoCopy() {
+		PlanDurations durations = new PlanDurations();
+		ChainStageResult stage = getStage("deploy", 30 * 1000L);
+		durations.addOlderBuild(getBuild(1, new Date(), 60 * 1000L, stage));
+
+		ProjectReport report = new ProjectReport("Project", "PROJ", "Plan", "PROJ-PLAN");
+		report.setCurrentBuild(new Build(getBuild(2, new Date(), 90 * 1000L, stage), null));
+		report.addPipelineStageToList(new PipelineStage(stage));
+		PlanDurations copy = durations.copy();
+		assertEquals("Build should be recorded into the copy", true, copy.record(report));
+
+		assertEquals("Copy should hold both builds", 2, copy.getBuilds().getCount());
+		assertEquals("Copy should hold both stages", 2, copy.getStages().get("deploy").getCount());
+		assertEquals("Original should be unchanged", 1, durations.getBuilds().getCount());
+		assertEquals("Stages of the original should be unchanged", 1, durations.getStages().get("deploy").getCount());
+		assertEquals("Original should still record the build", true, durations.record(report));
+	}
+}
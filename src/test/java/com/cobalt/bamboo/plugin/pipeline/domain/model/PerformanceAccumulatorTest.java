@@ -0,0 +1,176 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.author.Author;
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.commit.Commit;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class PerformanceAccumulatorTest {
+    private ContributorBuilder cb;
+    private Date[] days;
+
+    @Before
+    public void setup() {
+        cb = new ContributorBuilder(null);
+        days = new Date[6];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = new Date();
+            days[i].setDate(days[i].getDate() - days.length + i);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        PerformanceSummary summary = new PerformanceAccumulator(cb).getSummary();
+        assertEquals("Success percentage should be 0", 0, summary.getSuccessPercentage(), 0.0001);
+        assertEquals("Average changes should be -1", -1, summary.getAverageChanges(), 0.0001);
+        assertEquals("There should be no completions", 0, summary.getCompletions().size());
+    }
+
+    @Test
+    public void testIncrementalMatchesFullHistory() {
+        List<ChainResultsSummary> builds = new ArrayList<ChainResultsSummary>();
+        builds.add(getChainResultsSummary(true, false, "alice", 1, days[0]));
+        builds.add(getChainResultsSummary(false, true, "bob", 2, days[1]));
+        builds.add(getChainResultsSummary(true, true, "alice", 3, days[2]));
+        builds.add(getChainResultsSummary(true, false, "bob", 4, days[3]));
+        builds.add(getChainResultsSummary(false, true, "alice", 5, days[4]));
+        builds.add(getChainResultsSummary(true, true, "carol", 6, days[5]));
+
+        PerformanceAccumulator accumulator = new PerformanceAccumulator(cb);
+        for (int i = 0; i < builds.size(); i++) {
+            accumulator.addBuild(builds.get(i));
+
+            // the full history is newest first
+            List<ResultsSummary> history = new ArrayList<ResultsSummary>();
+            for (int j = i; j >= 0; j--) {
+                history.add(builds.get(j));
+            }
+            PerformanceAccumulator wholeHistory = new PerformanceAccumulator(cb);
+            for (ResultsSummary build : history) {
+                wholeHistory.addOlderBuild(build);
+            }
+            PerformanceSummary expected = wholeHistory.getSummary();
+            PerformanceSummary actual = accumulator.getSummary();
+
+            assertEquals("Success percentage after build " + (i + 1) + " isn't as expected",
+                    expected.getSuccessPercentage(), actual.getSuccessPercentage(), 0.0001);
+            assertEquals("Average changes after build " + (i + 1) + " isn't as expected",
+                    expected.getAverageChanges(), actual.getAverageChanges(), 0.0001);
+            assertEquals("Average frequency after build " + (i + 1) + " isn't as expected",
+                    expected.getAverageFrequency(), actual.getAverageFrequency(), 0.0001);
+            assertEquals("Number of completions after build " + (i + 1) + " isn't as expected",
+                    expected.getCompletions().size(), actual.getCompletions().size());
+        }
+        assertEquals("Last build number isn't as expected", 6, accumulator.getLastBuildNumber());
+    }
+
+    @Test
+    public void testCompletionTakesChangesSincePreviousCompletion() {
+        PerformanceAccumulator accumulator = new PerformanceAccumulator(cb);
+        accumulator.addBuild(getChainResultsSummary(false, true, "alice", 1, days[0]));
+        accumulator.addBuild(getChainResultsSummary(true, false, "alice", 2, days[1]));
+        accumulator.addBuild(getChainResultsSummary(true, true, "bob", 3, days[2]));
+
+        assertEquals("Pending changes shouldn't make a completion", 1, accumulator.getSummary().getCompletions().size());
+
+        accumulator.addBuild(getChainResultsSummary(false, true, "alice", 4, days[3]));
+        List<CompletionStats> completions = accumulator.getSummary().getCompletions();
+        assertEquals("Number of completions isn't as expected", 2, completions.size());
+        assertEquals("Most recent completion comes first", 4, completions.get(0).getBuildNumber());
+        assertEquals("Changes of the completion aren't as expected", 3, completions.get(0).getNumChanges());
+        assertEquals("Contributors of the completion aren't as expected", 2,
+                completions.get(0).getContributorsSortedByLatestCommit().size());
+        assertEquals("Commits of alice aren't as expected", 2, getContributor(completions.get(0), "alice").getCommitCount());
+    }
+
+    @Test
+    public void testContinuableBuildBecomesCompletion() {
+        ChainResultsSummary first = getChainResultsSummary(false, true, "alice", 1, days[0]);
+        ChainResultsSummary waiting = getChainResultsSummary(true, true, "bob", 2, days[1]);
+        ChainResultsSummary next = getChainResultsSummary(true, true, "carol", 3, days[2]);
+
+        PerformanceAccumulator accumulator = new PerformanceAccumulator(cb);
+        accumulator.addLatestBuilds(ImmutableList.<ResultsSummary>of(next, waiting, first));
+        List<CompletionStats> completions = accumulator.getSummary().getCompletions();
+        assertEquals("Builds waiting at a manual stage aren't completions", 1, completions.size());
+        assertEquals("Last build added for good should be before the waiting build", 1,
+                accumulator.getLastBuildNumber());
+
+        // the manual stage of build 2 is run
+        ChainResultsSummary deployed = getChainResultsSummary(false, true, "bob", 2, days[3]);
+        accumulator.addLatestBuilds(ImmutableList.<ResultsSummary>of(next, deployed, first));
+        PerformanceSummary summary = accumulator.getSummary();
+        completions = summary.getCompletions();
+        assertEquals("Build 2 should now be a completion", 2, completions.size());
+        assertEquals("Most recent completion comes first", 2, completions.get(0).getBuildNumber());
+        assertEquals("Completion should only take its own changes", 1, completions.get(0).getNumChanges());
+        assertEquals("Success percentage isn't as expected", 1.0, summary.getSuccessPercentage(), 0.0001);
+        assertEquals("Build 3 is still waiting at a manual stage", 2, accumulator.getLastBuildNumber());
+    }
+
+    @Test
+    public void testHistoryLeavesOutBuildsThatCanChange() {
+        ChainResultsSummary first = getChainResultsSummary(false, true, "alice", 1, days[0]);
+        ChainResultsSummary running = getChainResultsSummary(false, false, "bob", 2, null);
+        ChainResultsSummary parallel = getChainResultsSummary(false, true, "carol", 3, days[2]);
+        List<ResultsSummary> latestBuilds = ImmutableList.<ResultsSummary>of(parallel, running, first);
+
+        int firstUnsettled = PerformanceAccumulator.getFirstUnsettledBuildNumber(latestBuilds);
+        assertEquals("Running build should be the first that can change", 2, firstUnsettled);
+        PerformanceAccumulator accumulator = new PerformanceAccumulator(cb, firstUnsettled);
+        for (ResultsSummary build : latestBuilds) {
+            accumulator.addOlderBuild(build);
+        }
+        accumulator.addLatestBuilds(latestBuilds);
+        assertEquals("Only completed builds should be counted", 1.0,
+                accumulator.getSummary().getSuccessPercentage(), 0.0001);
+
+        // build 2 completes after build 3, and fails
+        ChainResultsSummary failed = getChainResultsSummary(false, false, "bob", 2, days[3]);
+        accumulator.addLatestBuilds(ImmutableList.<ResultsSummary>of(parallel, failed, first));
+        PerformanceSummary summary = accumulator.getSummary();
+        assertEquals("Late build should be counted", 0.67, summary.getSuccessPercentage(), 0.0001);
+        assertEquals("Number of completions isn't as expected", 2, summary.getCompletions().size());
+        assertEquals("Completion should take the changes of the late build", 2,
+                summary.getCompletions().get(0).getNumChanges());
+    }
+
+    private Contributor getContributor(CompletionStats completion, String username) {
+        for (Contributor contributor : completion.getContributorsSortedByLatestCommit()) {
+            if (contributor.getUsername().equals(username)) {
+                return contributor;
+            }
+        }
+        return null;
+    }
+
+    private ChainResultsSummary getChainResultsSummary(boolean cont, boolean succ, String name, int buildNumber, Date date) {
+        ChainResultsSummary result = mock(ChainResultsSummary.class);
+        when(result.isContinuable()).thenReturn(cont);
+        when(result.isSuccessful()).thenReturn(succ);
+        Commit c = mock(Commit.class);
+        Author a = mock(Author.class);
+        when(a.getLinkedUserName()).thenReturn(name);
+        when(a.getName()).thenReturn(name);
+        when(c.getAuthor()).thenReturn(a);
+        when(c.getDate()).thenReturn(date);
+        ImmutableList<Commit> commits = ImmutableList.of(c);
+        when(result.getCommits()).thenReturn(commits);
+        when(result.getBuildCompletedDate()).thenReturn(date);
+        when(result.getBuildNumber()).thenReturn(buildNumber);
+        return result;
+    }
+}
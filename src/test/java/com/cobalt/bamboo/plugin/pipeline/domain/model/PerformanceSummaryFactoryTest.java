@@ -42,12 +42,6 @@ public class PerformanceSummaryFactoryTest {
         current = new Date();
     }
 
-    @Test
-    public void testNoBuild() {
-        PerformanceSummary cdp = PerformanceSummaryCreator.create(new ArrayList<ResultsSummary>(), cb);
-        assertEquals("No build, return null", null, cdp);
-    }
-
     @Test
     public void testNoSuccessOneBuild() {
         List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
@@ -177,7 +171,14 @@ public class PerformanceSummaryFactoryTest {
 
     private void checkExpected(List<ResultsSummary> list, double percentage, double changes, double frequency,
                                List<Integer> completionsChanges, List<Integer> buildNumbers) {
-        PerformanceSummary cdp = PerformanceSummaryCreator.create(list, cb);
+        // loaded the way the plan service loads it, newest build first
+        PerformanceAccumulator accumulator = new PerformanceAccumulator(cb,
+                PerformanceAccumulator.getFirstUnsettledBuildNumber(list));
+        for (ResultsSummary build : list) {
+            accumulator.addOlderBuild(build);
+        }
+        accumulator.addLatestBuilds(list);
+        PerformanceSummary cdp = accumulator.getSummary();
         assertEquals("Success percentage isn't as expected", percentage, cdp.getSuccessPercentage(), 0.0001);
         assertEquals("Average changes isn't as expected", changes, cdp.getAverageChanges(), 0.0001);
         assertEquals("Average frequency isn't as expected", frequency, cdp.getAverageFrequency(), 0.0001);
@@ -4,11 +4,16 @@ import com.atlassian.bamboo.builder.BuildState;
 import com.atlassian.bamboo.builder.LifeCycleState;
 import com.atlassian.bamboo.chains.ChainResultsSummary;
 import com.atlassian.bamboo.chains.ChainStageResult;
+import com.atlassian.bamboo.plan.PlanKey;
+import com.atlassian.bamboo.resultsummary.BuildResultsSummary;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
@@ -89,9 +94,73 @@ public class PipelineStagesTest {
 		assertEquals("The third stage state should match", BuildState.UNKNOWN, pipes.get(2).getBuildState());
 	}
 	
+	@Test
+	public void testJobEventsPatchOnlyTheirStage(){
+		ChainStageResult deploy = getStageWithGivenNameAndState("deploy", LifeCycleState.NOT_BUILT, BuildState.UNKNOWN);
+		Set<BuildResultsSummary> jobs = new HashSet<BuildResultsSummary>();
+		jobs.add(getJob("PROJ-PLAN-DEP1"));
+		jobs.add(getJob("PROJ-PLAN-DEP2"));
+		when(deploy.getBuildResults()).thenReturn(jobs);
+		
+		ProjectReport cdr = new ProjectReport("test", "test", "test", "test");
+		cdr.addPipelineStageToList(new PipelineStage(getStageWithGivenNameAndState("build", LifeCycleState.FINISHED, BuildState.SUCCESS)));
+		cdr.addPipelineStageToList(new PipelineStage(deploy));
+		ChainResultsSummary chain = mock(ChainResultsSummary.class);
+		when(chain.getBuildNumber()).thenReturn(7);
+		cdr.setCurrentBuild(new Build(chain, null));
+		
+		assertEquals("A job of another build can't be patched", null, cdr.withJobQueued(8, "PROJ-PLAN-DEP1", new Date()));
+		assertEquals("An unknown job can't be patched", null, cdr.withJobQueued(7, "PROJ-PLAN-OTHER", new Date()));
+		
+		ProjectReport queued = cdr.withJobQueued(7, "PROJ-PLAN-DEP1", new Date(1000));
+		assertEquals("The stage should have started", PipelineState.CD_IN_PROGRESS, queued.getPipelineStages().get(1).getCDPipelineState());
+		assertEquals("The other stage should be untouched", cdr.getPipelineStages().get(0), queued.getPipelineStages().get(0));
+		assertEquals("The original report should be untouched", LifeCycleState.NOT_BUILT, cdr.getPipelineStages().get(1).getLifeCycleState());
+		
+		ProjectReport oneDone = queued.withJobCompleted(7, "PROJ-PLAN-DEP1", BuildState.SUCCESS, new Date(2000));
+		assertEquals("The stage should still be running", PipelineState.CD_IN_PROGRESS, oneDone.getPipelineStages().get(1).getCDPipelineState());
+		
+		ProjectReport allDone = oneDone.withJobCompleted(7, "PROJ-PLAN-DEP2", BuildState.FAILED, new Date(3000));
+		assertEquals("The stage should have failed", PipelineState.CD_FAILED, allDone.getPipelineStages().get(1).getCDPipelineState());
+		assertEquals("Last update time should be the last job's", new Date(3000), allDone.getLastUpdateTime());
+	}
+	
+	@Test
+	public void testStoppedJobDoesntMakeStageSuccessful(){
+		ChainStageResult deploy = getStageWithGivenNameAndState("deploy", LifeCycleState.NOT_BUILT, BuildState.UNKNOWN);
+		Set<BuildResultsSummary> jobs = new HashSet<BuildResultsSummary>();
+		jobs.add(getJob("PROJ-PLAN-DEP1"));
+		jobs.add(getJob("PROJ-PLAN-DEP2"));
+		when(deploy.getBuildResults()).thenReturn(jobs);
+		
+		ProjectReport cdr = new ProjectReport("test", "test", "test", "test");
+		cdr.addPipelineStageToList(new PipelineStage(deploy));
+		ChainResultsSummary chain = mock(ChainResultsSummary.class);
+		when(chain.getBuildNumber()).thenReturn(7);
+		cdr.setCurrentBuild(new Build(chain, null));
+		
+		ProjectReport patched = cdr.withJobQueued(7, "PROJ-PLAN-DEP1", new Date(1000))
+				.withJobQueued(7, "PROJ-PLAN-DEP2", new Date(1000))
+				.withJobCompleted(7, "PROJ-PLAN-DEP1", BuildState.SUCCESS, new Date(2000))
+				.withJobCompleted(7, "PROJ-PLAN-DEP2", BuildState.UNKNOWN, new Date(3000));
+		assertEquals("A stopped job should fail the stage", BuildState.FAILED,
+				patched.getPipelineStages().get(0).getBuildState());
+		assertEquals("The stage should be finished", LifeCycleState.FINISHED,
+				patched.getPipelineStages().get(0).getLifeCycleState());
+	}
+	
 	
 	// ========== Private Helper Methods ==========
 	
+	private BuildResultsSummary getJob(String jobKey){
+		BuildResultsSummary job = mock(BuildResultsSummary.class);
+		PlanKey planKey = mock(PlanKey.class);
+		when(planKey.getKey()).thenReturn(jobKey);
+		when(job.getPlanKey()).thenReturn(planKey);
+		when(job.getLifeCycleState()).thenReturn(LifeCycleState.NOT_BUILT);
+		return job;
+	}
+	
 	private ChainStageResult getStageWithGivenNameAndState(String name, LifeCycleState lifeState, BuildState buildState){
 		ChainStageResult stageResult = mock(ChainStageResult.class);
 		when(stageResult.getName()).thenReturn(name);
@@ -0,0 +1,97 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.author.Author;
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.commit.Commit;
+import com.atlassian.bamboo.commit.CommitFile;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class PlanChangeListTest {
+    private ContributorBuilder cb;
+
+    @Before
+    public void setup() {
+        cb = new ContributorBuilder(null);
+    }
+
+    @Test
+    public void testChangesGoBackToLastCompletion() {
+        List<ResultsSummary> builds = new ArrayList<ResultsSummary>();
+        builds.add(getChainResultsSummary(true, true, 4));
+        builds.add(getChainResultsSummary(true, false, 3));
+        builds.add(getChainResultsSummary(false, true, 2));
+        builds.add(getChainResultsSummary(false, true, 1));
+
+        PlanChangeList changeList = new PlanChangeList(cb);
+        changeList.update(builds);
+
+        // build 2 is the last completion, so builds 4 and 3 have changes
+        List<Change> actual = changeList.getChanges();
+        assertEquals("Number of changes isn't as expected", 2, actual.size());
+        assertEquals("Build number of change 0 isn't as expected", 4, actual.get(0).getBuildNumber());
+        assertEquals("Build number of change 1 isn't as expected", 3, actual.get(1).getBuildNumber());
+    }
+
+    @Test
+    public void testChangesOfKnownBuildsAreReused() {
+        ChainResultsSummary build1 = getChainResultsSummary(true, false, 1);
+        ChainResultsSummary build2 = getChainResultsSummary(true, false, 2);
+
+        PlanChangeList changeList = new PlanChangeList(cb);
+        changeList.update(ImmutableList.<ResultsSummary>of(build1));
+        Change first = changeList.getChanges().get(0);
+
+        changeList.update(ImmutableList.<ResultsSummary>of(build2, build1));
+        assertEquals("Both builds should have their changes", 2, changeList.getChanges().size());
+        assertSame("Changes of the known build should be reused", first, changeList.getChanges().get(1));
+        verify(build1, times(1)).getCommits();
+    }
+
+    @Test
+    public void testListIsCutBackOnCompletion() {
+        ChainResultsSummary build1 = getChainResultsSummary(true, false, 1);
+        ChainResultsSummary build2 = getChainResultsSummary(false, true, 2);
+        ChainResultsSummary build3 = getChainResultsSummary(true, false, 3);
+
+        PlanChangeList changeList = new PlanChangeList(cb);
+        changeList.update(ImmutableList.<ResultsSummary>of(build2, build1));
+        assertEquals("Newest completion keeps the changes before it", 2, changeList.getChanges().size());
+
+        changeList.update(ImmutableList.<ResultsSummary>of(build3, build2, build1));
+        assertEquals("Only changes after the completion should be left", 1, changeList.getChanges().size());
+        assertEquals("Build number isn't as expected", 3, changeList.getChanges().get(0).getBuildNumber());
+    }
+
+    private ChainResultsSummary getChainResultsSummary(boolean cont, boolean succ, int buildNumber) {
+        ChainResultsSummary result = mock(ChainResultsSummary.class);
+        when(result.isContinuable()).thenReturn(cont);
+        when(result.isSuccessful()).thenReturn(succ);
+        Commit c = mock(Commit.class);
+        when(c.getComment()).thenReturn("comment");
+        Author a = mock(Author.class);
+        when(a.getLinkedUserName()).thenReturn("alice");
+        when(a.getFullName()).thenReturn("Alice");
+        when(c.getAuthor()).thenReturn(a);
+        when(c.getDate()).thenReturn(new Date());
+        when(c.getFiles()).thenReturn(new ArrayList<CommitFile>());
+        ImmutableList<Commit> commits = ImmutableList.of(c);
+        when(result.getCommits()).thenReturn(commits);
+        when(result.getBuildNumber()).thenReturn(buildNumber);
+        return result;
+    }
+}
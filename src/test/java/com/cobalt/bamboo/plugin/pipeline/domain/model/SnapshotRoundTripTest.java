@@ -0,0 +1,105 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.builder.BuildState;
+import com.atlassian.bamboo.builder.LifeCycleState;
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.chains.ChainStageResult;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class SnapshotRoundTripTest {
+
+	@Test
+	public void testReportWithNoBuilds() throws IOException {
+		ProjectReport report = new ProjectReport("Project", "Plan", "PROJ", "PROJ-PLAN");
+		report.setCurrentBuild(new Build(null, null));
+
+		ProjectReport restored = roundTrip(report);
+		assertEquals("Project name should match", "Project", restored.getProjectName());
+		assertEquals("Plan key should match", "PROJ-PLAN", restored.getPlanKey());
+		assertEquals("Last deployment should be null", null, restored.getLastDeploymentTime());
+		assertEquals("Build number should be -1", -1, restored.getCurrentBuild().getBuildNumber());
+		assertEquals("State should be not built", PipelineState.CD_NOT_BUILT, restored.getCurrentBuild().getCDPipelineState());
+		assertEquals("There should be no stages", 0, restored.getPipelineStages().size());
+	}
+
+	@Test
+	public void testReportWithBuildStagesAndContributors() throws IOException {
+		Date deployed = new Date(1000);
+		Date updated = new Date(5000);
+		ProjectReport report = new ProjectReport("Project", "Plan", "PROJ", "PROJ-PLAN");
+		report.setLastDeploymentTime(deployed);
+		report.updateLastUpdateTime(updated);
+		report.setNumChanges(3);
+		report.addContributor(new Contributor("alice", 2, new Date(2000), "Alice A", "pic", "profile"));
+		report.addContributor(new Contributor("bob", 1, new Date(3000), null, null, null));
+
+		ChainResultsSummary chain = mock(ChainResultsSummary.class);
+		when(chain.getBuildResultKey()).thenReturn("PROJ-PLAN-7");
+		when(chain.getBuildNumber()).thenReturn(7);
+		when(chain.getBuildCompletedDate()).thenReturn(updated);
+		when(chain.isSuccessful()).thenReturn(true);
+		when(chain.isContinuable()).thenReturn(false);
+		report.setCurrentBuild(new Build(chain, null));
+
+		ChainStageResult stage = mock(ChainStageResult.class);
+		when(stage.getName()).thenReturn("Deploy");
+		when(stage.getLifeCycleState()).thenReturn(LifeCycleState.NOT_BUILT);
+		when(stage.getState()).thenReturn(BuildState.UNKNOWN);
+		when(stage.isManual()).thenReturn(true);
+		report.addPipelineStageToList(new PipelineStage(stage));
+
+		ProjectReport restored = roundTrip(report);
+		assertEquals("Last deployment should match", deployed, restored.getLastDeploymentTime());
+		assertEquals("Last update should match", updated, restored.getLastUpdateTime());
+		assertEquals("Number of changes should match", 3, restored.getNumChanges());
+		assertEquals("Contributors should match", 2, restored.getContributorsSortedByLatestCommit().size());
+		assertEquals("Most recent contributor comes first", "bob",
+				restored.getContributorsSortedByLatestCommit().get(0).getUsername());
+		assertEquals("Commit count should match", 2,
+				restored.getContributorsSortedByLatestCommit().get(1).getCommitCount());
+
+		Build build = restored.getCurrentBuild();
+		assertEquals("Build key should match", "PROJ-PLAN-7", build.getBuildKey());
+		assertEquals("Build number should match", 7, build.getBuildNumber());
+		assertEquals("State should match", PipelineState.CD_SUCCESS, build.getCDPipelineState());
+		assertEquals("Completed date should match", updated, build.getBuildCompletedDate());
+		assertEquals("Percentage completed should be -1", -1, build.getPercentageCompleted(), 0.0001);
+
+		PipelineStage restoredStage = restored.getPipelineStages().get(0);
+		assertEquals("Stage name should match", "Deploy", restoredStage.getStageName());
+		assertEquals("Stage should be manually paused", PipelineState.CD_MANUALLY_PAUSED, restoredStage.getCDPipelineState());
+	}
+
+	@Test
+	public void testUptimeGrade() throws IOException {
+		Date current = new Date();
+		Date currentBuildDate = new Date(current.getTime() - 100000);
+		Date startDate = new Date(current.getTime() - 200000);
+		UptimeGrade grade = new UptimeGrade(startDate, 50000, true, currentBuildDate);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		grade.writeTo(new DataOutputStream(bytes));
+		UptimeGrade restored = UptimeGrade.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals("Uptime percentage is not as expected.", 0.75, restored.getUptimePercentage(), 0.0001);
+		assertEquals("Grade is not as expected.", "C", restored.getGrade());
+	}
+
+	private ProjectReport roundTrip(ProjectReport report) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		report.writeTo(new DataOutputStream(bytes));
+		return ProjectReport.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+}
@@ -0,0 +1,233 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import com.atlassian.bamboo.chains.ChainResultsSummary;
+import com.atlassian.bamboo.resultsummary.ResultsSummary;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UptimeGradeAccumulatorTest {
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+	private Date day1;
+	private Date day2;
+	private Date day3;
+
+	@Before
+	public void setup() {
+		day1 = new Date();
+		day2 = new Date();
+		day3 = new Date();
+		day1.setDate(day1.getDate() - 5);
+		day2.setDate(day2.getDate() - 4);
+		day3.setDate(day3.getDate() - 3);
+	}
+
+	@Test
+	public void testPagesMatchWholeHistory() {
+		long now = System.currentTimeMillis();
+		// newest first, with a build still running and one never completed
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(true, 6, null));
+		buildList.add(getBuild(true, 5, new Date(now - 1 * DAY)));
+		buildList.add(getBuild(false, 4, new Date(now - 2 * DAY)));
+		buildList.add(getBuild(true, 3, null));
+		buildList.add(getBuild(true, 2, new Date(now - 4 * DAY)));
+		buildList.add(getBuild(false, 1, new Date(now - 6 * DAY)));
+
+		UptimeGradeAccumulator accumulator = new UptimeGradeAccumulator();
+		for (ResultsSummary build : buildList.subList(0, 4)) {
+			accumulator.addOlderBuild(build);
+		}
+		for (ResultsSummary build : buildList.subList(4, 6)) {
+			accumulator.addOlderBuild(build);
+		}
+
+		UptimeGrade paged = accumulator.getUptimeGrade();
+		// up from day -4 to -2 and from day -1 to now, out of 6 days
+		assertEquals("Uptime percentage is not as expected", 0.5, paged.getUptimePercentage(), 0.001);
+		assertEquals("Grade is not as expected", "F", paged.getGrade());
+	}
+
+	@Test
+	public void testMostlyGreenHistory() {
+		long now = System.currentTimeMillis();
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(true, 5, new Date(now - 2 * DAY)));
+		buildList.add(getBuild(false, 4, new Date(now - 3 * DAY)));
+		buildList.add(getBuild(true, 3, new Date(now - 5 * DAY)));
+		buildList.add(getBuild(true, 2, new Date(now - 9 * DAY)));
+		buildList.add(getBuild(false, 1, new Date(now - 10 * DAY)));
+
+		UptimeGradeAccumulator accumulator = new UptimeGradeAccumulator();
+		for (ResultsSummary build : buildList) {
+			accumulator.addOlderBuild(build);
+		}
+
+		// up from day -9 to -3 and from day -2 to now, out of 10 days
+		UptimeGrade grade = accumulator.getUptimeGrade();
+		assertEquals("Uptime percentage is not as expected", 0.8, grade.getUptimePercentage(), 0.001);
+		assertEquals("Grade is not as expected", "B-", grade.getGrade());
+	}
+
+	@Test
+	public void testNoCompletedBuild() {
+		UptimeGradeAccumulator accumulator = new UptimeGradeAccumulator();
+		accumulator.addOlderBuild(getBuild(true, 1, null));
+		assertEquals("Uptime percentage is not as expected", -1, accumulator.getUptimeGrade().getUptimePercentage(), 0.001);
+		assertEquals("Grade is not as expected", null, accumulator.getUptimeGrade().getGrade());
+	}
+
+	@Test
+	public void testNoSuccessOneBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 1, day1));
+		checkExpected(buildList, 0, "F");
+	}
+	
+	@Test
+	public void testOneSuccessOneBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(true, 1, day1));
+		checkExpected(buildList, 1, "A");
+	}
+	
+	@Test
+	public void testNoCompletionOneBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 1, null));
+		checkExpected(buildList, -1, null);
+	}
+	
+	@Test
+	public void testSuccessSuccessTwoBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(true, 2, day2));
+		buildList.add(getBuild(true, 1, day1));
+		checkExpected(buildList, 1, "A");
+	}
+	
+	@Test
+	public void testSuccessFailTwoBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 2, day2));
+		buildList.add(getBuild(true, 1, day1));
+		checkExpected(buildList, 0.2, "F");
+	}
+	
+	@Test
+	public void testFailSuccessTwoBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(true, 2, day2));
+		buildList.add(getBuild(false, 1, day1));
+		checkExpected(buildList, 0.8, "B-");
+	}
+	
+	@Test
+	public void testFailFailTwoBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 2, day2));
+		buildList.add(getBuild(false, 1, day1));
+		checkExpected(buildList, 0, "F");
+	}
+	
+	@Test
+	public void testSuccessImcompleteTwoBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 2, null));
+		buildList.add(getBuild(true, 1, day1));
+		checkExpected(buildList, 1, "A");
+	}
+	
+	@Test
+	public void testIncompleteSuccessTwoBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(true, 2, day2));
+		buildList.add(getBuild(false, 1, null));
+		checkExpected(buildList, 1, "A");
+	}
+	
+	@Test
+	public void testFailIncompleteTwoBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 2, null));
+		buildList.add(getBuild(false, 1, day1));
+		checkExpected(buildList, 0, "F");
+	}
+	
+	@Test
+	public void testImcompleteFailTwoBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 2, day2));
+		buildList.add(getBuild(false, 1, null));
+		checkExpected(buildList, 0, "F");
+	}
+	
+	@Test
+	public void testNoCompletionTwoBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 2, null));
+		buildList.add(getBuild(false, 1, null));
+		checkExpected(buildList, -1, null);
+	}
+	
+	@Test
+	public void testIncompleteSuccessFailThreeBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 3, day3));
+		buildList.add(getBuild(true, 2, day2));
+		buildList.add(getBuild(false, 1, null));
+		checkExpected(buildList, 0.25, "F");
+	}
+	
+	@Test
+	public void testSuccessIncompleteFailThreeBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 3, day3));
+		buildList.add(getBuild(false, 2, null));
+		buildList.add(getBuild(true, 1, day1));
+		checkExpected(buildList, 0.4, "F");
+	}
+	
+	@Test
+	public void testSuccessFailIncompleteThreeBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 3, null));
+		buildList.add(getBuild(false, 2, day2));
+		buildList.add(getBuild(true, 1, day1));
+		checkExpected(buildList, 0.2, "F");
+	}
+	
+	@Test
+	public void testIncompleteSuccessIncompleteThreeBuild(){
+		List<ResultsSummary> buildList = new ArrayList<ResultsSummary>();
+		buildList.add(getBuild(false, 3, null));
+		buildList.add(getBuild(true, 2, day2));
+		buildList.add(getBuild(false, 1, null));
+		checkExpected(buildList, 1, "A");
+	}
+
+	private void checkExpected(List<ResultsSummary> list, double upPercentage, String grade) {
+		UptimeGradeAccumulator accumulator = new UptimeGradeAccumulator();
+		for (ResultsSummary build : list) {
+			accumulator.addOlderBuild(build);
+		}
+		UptimeGrade g = accumulator.getUptimeGrade();
+		assertEquals("Uptime percentage is not as expected", upPercentage, g.getUptimePercentage(), 0.001);
+		assertEquals("Grade is not as expected", grade, g.getGrade());
+	}
+
+	private ChainResultsSummary getBuild(boolean successful, int buildNumber, Date completedDate) {
+		ChainResultsSummary result = mock(ChainResultsSummary.class);
+		when(result.isSuccessful()).thenReturn(successful);
+		when(result.getBuildNumber()).thenReturn(buildNumber);
+		when(result.getBuildCompletedDate()).thenReturn(completedDate);
+		return result;
+	}
+}
@@ -161,4 +161,19 @@ public class UptimeGradeTest {
 		assertEquals("Uptime percentage is not as expected.", 0.25, g.getUptimePercentage(), 0.0001);
 		assertEquals("Grade is not as expected.", "F", g.getGrade());
 	}
+	
+	@Test
+	public void testUpdateCopyLeavesGradeUnchanged() {
+		Date current = new Date();
+		Date currentBuildDate = new Date(current.getTime() - 100000);
+		Date startDate = new Date(current.getTime() - 200000);
+		UptimeGrade g = new UptimeGrade(startDate, 50000, true, currentBuildDate);
+		Build build = mock(Build.class);
+		when(build.getBuildCompletedDate()).thenReturn(new Date(current.getTime() - 50000));
+		when(build.isSuccessful()).thenReturn(false);
+		UptimeGrade copy = g.copy();
+		copy.update(build);
+		assertEquals("Copy should be updated.", 0.5, copy.getUptimePercentage(), 0.0001);
+		assertEquals("Original should be unchanged.", 0.75, g.getUptimePercentage(), 0.0001);
+	}
 }
@@ -0,0 +1,123 @@
+package com.cobalt.bamboo.plugin.pipeline.domain.model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class UptimeWindowsTest {
+	private static final long DAY = UptimeWindows.DAY;
+
+	@Test
+	public void testOldFailureOnlyAffectsLongWindows() {
+		long now = System.currentTimeMillis();
+		UptimeWindows windows = new UptimeWindows();
+		// red from 60 to 40 days ago, green since
+		windows.update(now - 100 * DAY, true);
+		windows.update(now - 60 * DAY, false);
+		windows.update(now - 50 * DAY, false);
+		windows.update(now - 40 * DAY, true);
+		windows.update(now - 10 * DAY, true);
+
+		assertEquals("7 days should be all green", 1.0, windows.getUptimePercentage(7, now), 0.001);
+		assertEquals("30 days should be all green", 1.0, windows.getUptimePercentage(30, now), 0.001);
+		assertEquals("90 days should include the failure", 70.0 / 90, windows.getUptimePercentage(90, now), 0.001);
+		assertEquals("Grade of the 7 days isn't as expected", "A", windows.getWindows().get(0).getGrade());
+	}
+
+	@Test
+	public void testHistoryLoadedNewestFirst() {
+		long now = System.currentTimeMillis();
+		long[] times = {now - 120 * DAY, now - 100 * DAY, now - 60 * DAY, now - 50 * DAY, now - 40 * DAY, now - 10 * DAY};
+		boolean[] successful = {false, true, false, false, true, true};
+		UptimeWindows updated = new UptimeWindows();
+		UptimeWindows loaded = new UptimeWindows();
+		for (int i = 0; i < times.length; i++) {
+			updated.update(times[i], successful[i]);
+		}
+		int numAdded = 0;
+		for (int i = times.length - 1; i >= 0; i--) {
+			numAdded++;
+			if (!loaded.addOlderBuild(times[i], successful[i], now)) {
+				break;
+			}
+		}
+
+		assertEquals("Should stop at the first build before the longest window", 5, numAdded);
+		for (int days : UptimeWindows.WINDOW_DAYS) {
+			assertEquals("Uptime of " + days + " days should be the same either way",
+					updated.getUptimePercentage(days, now), loaded.getUptimePercentage(days, now), 0.001);
+		}
+		loaded.update(now - DAY, false);
+		updated.update(now - DAY, false);
+		assertEquals("Builds added after loading should be counted", updated.getUptimePercentage(7, now),
+				loaded.getUptimePercentage(7, now), 0.001);
+	}
+
+	@Test
+	public void testWindowClippedToFirstBuild() {
+		long now = System.currentTimeMillis();
+		UptimeWindows windows = new UptimeWindows();
+		assertEquals("No build should give no uptime", -1, windows.getUptimePercentage(7, now), 0.001);
+
+		windows.update(now - 4 * DAY, true);
+		windows.update(now - 2 * DAY, false);
+		// older than the last build, ignored
+		windows.update(now - 3 * DAY, true);
+
+		assertEquals("Window should start at the first build", 0.5, windows.getUptimePercentage(7, now), 0.001);
+	}
+
+	@Test
+	public void testRingKeepsMostRecentChanges() {
+		long now = System.currentTimeMillis();
+		UptimeWindows windows = new UptimeWindows();
+		int changes = UptimeWindows.CAPACITY * 2;
+		for (int i = changes; i > 0; i--) {
+			windows.update(now - i * DAY / 10, i % 2 == 0);
+		}
+
+		assertEquals("Alternating builds should be half green", 0.5, windows.getUptimePercentage(7, now - DAY / 10), 0.001);
+	}
+
+	@Test
+	public void testSnapshotRoundTrip() throws IOException {
+		long now = System.currentTimeMillis();
+		UptimeWindows windows = new UptimeWindows();
+		windows.update(now - 20 * DAY, false);
+		windows.update(now - 5 * DAY, true);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		windows.writeTo(new DataOutputStream(bytes));
+		UptimeWindows restored = UptimeWindows.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		for (int days : UptimeWindows.WINDOW_DAYS) {
+			assertEquals("Uptime of " + days + " days should be restored", windows.getUptimePercentage(days, now),
+					restored.getUptimePercentage(days, now), 0.001);
+		}
+		restored.update(now - 6 * DAY, false);
+		assertEquals("Older build should still be ignored", windows.getUptimePercentage(30, now),
+				restored.getUptimePercentage(30, now), 0.001);
+	}
+
+	@Test
+	public void testUpdateCopyLeavesWindowsUnchanged() {
+		long now = System.currentTimeMillis();
+		UptimeWindows windows = new UptimeWindows();
+		windows.update(now - 20 * DAY, true);
+
+		UptimeWindows copy = windows.copy();
+		copy.update(now - 5 * DAY, false);
+
+		assertEquals("Copy should be updated", 0.0, copy.getUptimePercentage(5, now), 0.001);
+		assertEquals("Original should be unchanged", 1.0, windows.getUptimePercentage(5, now), 0.001);
+		copy.update(now - 4 * DAY, true);
+		windows.update(now - 4 * DAY, true);
+		assertEquals("Original should still take builds", 1.0, windows.getUptimePercentage(5, now), 0.001);
+	}
+}